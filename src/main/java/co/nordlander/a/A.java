@@ -1,36 +1,61 @@
 package co.nordlander.a;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.Format;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.DeliveryMode;
 import javax.jms.Destination;
+import javax.jms.InvalidDestinationException;
 import javax.jms.JMSException;
 import javax.jms.MapMessage;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
 import javax.jms.MessageProducer;
 import javax.jms.Queue;
 import javax.jms.QueueBrowser;
@@ -42,6 +67,9 @@ import javax.naming.InitialContext;
 import javax.script.ScriptException;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ActiveMQSession;
+import org.apache.activemq.BlobMessage;
+import org.apache.activemq.artemis.api.core.client.SendAcknowledgementHandler;
 import org.apache.activemq.artemis.api.jms.ActiveMQJMSClient;
 import org.apache.activemq.command.ActiveMQMessage;
 import org.apache.activemq.command.ActiveMQQueue;
@@ -56,18 +84,23 @@ import org.apache.activemq.command.ProducerInfo;
 import org.apache.activemq.command.RemoveInfo;
 import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.AgeFileFilter;
 import org.apache.commons.io.filefilter.AndFileFilter;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.qpid.amqp_1_0.jms.impl.ConnectionFactoryImpl;
+import org.graalvm.polyglot.Engine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * A - A JMS testing and admin tool. Primarily built for use with ActiveMQ.
@@ -75,18 +108,33 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class A {
 	private static final Logger logger = LoggerFactory.getLogger(A.class);
 	protected ConnectionFactory cf;
+	protected Protocol protocol;
 	protected Connection conn;
 	protected Session sess, tsess;
 	protected CommandLine cmdLine;
+	protected String user, password;
+	protected final AtomicLong asyncSendErrors = new AtomicLong();
+	protected final AtomicLong asyncSendConfirmations = new AtomicLong();
+	// Sends that the broker confirms asynchronously
+	protected final AtomicLong asyncSends = new AtomicLong();
 	MessageDumpTransformer transformer = new MessageDumpTransformer();
-
+	protected PayloadGenerator payloadGenerator;
+	// Serializes output of messages received by concurrent consumers
+	private final Object outputLock = new Object();
+	// Lowered by tests, to load small files the way large ones are
+	protected long largeFileThreshold = LARGE_FILE_THRESHOLD;
+
+	private final BufferedOutput console = new BufferedOutput(System.out);
+	// Output other than records, while records are written to the console. Kept, so that its flusher thread is too
+	private final BufferedOutput errorConsole = new BufferedOutput(System.err);
 	// Customizable output
-	protected AOutput output = args -> {
-		for (Object arg : args) {
-			System.out.print(arg.toString());
-		}
-		System.out.println("");
-	};
+	protected AOutput output = console;
+	// Writes messages as records with --format, or null for text
+	protected MessageRecordWriter recordWriter;
+	private AOutput recordOutput;
+	private BufferedOutput recordFile;
+	// Summarizes browsed and received messages with --profile, or null to output them
+	protected QueueProfiler profiler;
 	
 	// Commands
 	public static final String CMD_AMQP = "A";
@@ -130,17 +178,88 @@ public class A {
 	public static final String CMD_JMS_TYPE = "y";
 	public static final String CMD_TTL = "z";
 	public static final String CMD_CLIENTID = "k";
+	public static final String CMD_PRODUCERS = "producers";
+	public static final String CMD_STREAM = "stream";
+	public static final String CMD_LISTENER = "listener";
+	public static final String CMD_PREFETCH = "prefetch";
+	public static final String CMD_CONSUMER_WINDOW = "consumer-window";
+	public static final String CMD_CONSUMERS = "consumers";
+	public static final String CMD_ACK_MODE = "ack-mode";
+	public static final String CMD_ACK_BATCH = "ack-batch";
+	public static final String CMD_ACK_INTERVAL = "ack-interval";
+	public static final String CMD_RATE = "rate";
+	public static final String CMD_RAMP_UP = "ramp-up";
+	public static final String CMD_REPORT_INTERVAL = "report-interval";
+	public static final String CMD_COMMIT_BATCH = "commit-batch";
+	public static final String CMD_COMMIT_BYTES = "commit-bytes";
+	public static final String CMD_ASYNC_SEND = "async-send";
+	public static final String CMD_SEND_WINDOW = "send-window";
+	public static final String CMD_SEND_TIME = "send-time";
+	public static final String CMD_SEND_TIMEOUT = "send-timeout";
+	public static final String CMD_LATENCY = "latency";
+	public static final String CMD_PING = "ping";
+	public static final String CMD_RESPOND = "respond";
+	public static final String CMD_GROUP_LANES = "group-lanes";
+	public static final String CMD_JOURNAL = "journal";
+	public static final String CMD_SERVER_SIDE = "server-side";
+	public static final String CMD_JMX_URL = "jmx-url";
+	public static final String CMD_SERVER_TIMEOUT = "server-timeout";
+	public static final String CMD_PURGE = "purge";
+	public static final String CMD_PAGE_SIZE = "page-size";
+	public static final String CMD_BROWSERS = "browsers";
+	public static final String CMD_TRANSFORMERS = "transformers";
+	public static final String CMD_FIND_REGEX = "find-regex";
+	public static final String CMD_FORMAT = "format";
+	public static final String CMD_PROFILE = "profile";
+	public static final String CMD_TOP = "top";
+	public static final String CMD_SAMPLE = "sample";
+	public static final String CMD_DIFF = "diff";
+	public static final String CMD_DIFF_BROKER = "diff-broker";
+	public static final String CMD_DIFF_BY = "diff-by";
 	
 	// Various constants
 	public static final long SLEEP_TIME_BETWEEN_FILE_CHECK = 1000L;
+	public static final long ASYNC_SEND_POLL_INTERVAL = 10L;
 	public static final String DEFAULT_COUNT_GET = "1";
 	public static final String DEFAULT_COUNT_ALL = "0";
+	public static final String DEFAULT_TOP = "10";
+	public static final String DIFF_BY_ID = "id";
+	public static final String DIFF_BY_CONTENT = "content";
 	public static final String DEFAULT_WAIT = "100";
 	public static final String TYPE_TEXT = "text";
 	public static final String TYPE_BYTES = "bytes";
 	public static final String TYPE_MAP = "map";
 	public static final String DEFAULT_TYPE = TYPE_TEXT;
 	public static final String DEFAULT_DATE_FORMAT = "yyyy MM dd HH:mm:ss";
+	public static final String DEFAULT_REPORT_INTERVAL = "10";
+	public static final String DEFAULT_REPLY_TIMEOUT = "5000";
+	public static final String DEFAULT_SEND_TIMEOUT = "5000";
+	public static final String DEFAULT_LANE_BATCH = "100";
+	public static final String DEFAULT_PURGE_BATCH = "1000";
+	public static final String DEFAULT_COMPETING_PREFETCH = "10";
+	public static final String DEFAULT_COMPETING_CONSUMER_WINDOW = "4096";
+	public static final String DEFAULT_SERVER_TIMEOUT = "60000";
+	public static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+	public static final String DEFAULT_BROWSERS = "4";
+	// Marks the end of the lines for a batch producer. Compared by identity.
+	private static final String END_OF_BATCH = new String("");
+	private static final int BATCH_QUEUE_SIZE = 1024;
+	// Thread safe, unlike SimpleDateFormat, so it is shared
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern(DEFAULT_DATE_FORMAT)
+			.withZone(ZoneId.systemDefault());
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	// Files of this size or larger are memory mapped when put
+	private static final long LARGE_FILE_THRESHOLD = 8 * 1024 * 1024;
+	private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+	private static final int HANDOFF_QUEUE_SIZE = 1024;
+	// Artemis message properties that stream a body from and to a stream
+	private static final String ARTEMIS_INPUT_STREAM = "JMS_AMQ_InputStream";
+	private static final String ARTEMIS_SAVE_STREAM = "JMS_AMQ_SaveStream";
+	public static final String DEFAULT_SEND_WINDOW = "1048576";
+	public static final String DEFAULT_ACK_BATCH = "100";
+	public static final String ACK_MODE_AUTO = "auto";
+	public static final String ACK_MODE_CLIENT = "client";
+	public static final String ACK_MODE_DUPS_OK = "dups-ok";
 
 	public enum Protocol {
 		OpenWire, AMQP, ArtemisCore
@@ -149,6 +268,8 @@ public class A {
 	public static void main(String[] args) {
 		System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
 		A a = new A();
+		// Output still in the buffer when stopped with Ctrl-C
+		Runtime.getRuntime().addShutdownHook(new Thread(a::flushOutput));
 		try { a.run(args); } catch (Exception e) {
 			e.printStackTrace();
 			System.exit(1);
@@ -173,6 +294,14 @@ public class A {
 				executeShowVersion();
 				return;
 			}
+			openRecordOutput(cmdLine);
+			// Counted again for each run
+			asyncSends.set(0);
+			asyncSendConfirmations.set(0);
+			asyncSendErrors.set(0);
+			if (cmdLine.hasOption(CMD_PROFILE)) {
+				profiler = new QueueProfiler(Integer.parseInt(cmdLine.getOptionValue(CMD_TOP, DEFAULT_TOP)));
+			}
 
 			Protocol protocol = Protocol.OpenWire;
 			if (cmdLine.hasOption(CMD_AMQP)) {
@@ -180,6 +309,16 @@ public class A {
 			} else if (cmdLine.hasOption(CMD_ARTEMIS_CORE)) {
 				protocol = Protocol.ArtemisCore;
 			}
+			if (protocol == Protocol.ArtemisCore && cmdLine.hasOption(CMD_PREFETCH)) {
+				output("Option --" + CMD_PREFETCH + " cannot be used with Artemis Core, which limits consumers in bytes. "
+						+ "Use --" + CMD_CONSUMER_WINDOW);
+				return;
+			}
+			if (protocol == Protocol.AMQP && isAsyncSend()) {
+				output("Option --" + CMD_ASYNC_SEND + " cannot be used with AMQP, since the AMQP client does not report "
+						+ "failed asynchronous sends");
+				return;
+			}
 
 			connect(cmdLine.getOptionValue(CMD_BROKER, "tcp://localhost:61616"),
 					cmdLine.getOptionValue(CMD_USER),
@@ -190,11 +329,17 @@ public class A {
 
 			long startTime = System.currentTimeMillis();
 			executeCommandLine(cmdLine);
+			if (profiler != null) {
+				for (String line : profiler.report()) {
+					output(line);
+				}
+			}
 			long stopTime = System.currentTimeMillis();
 			long elapsedTime = stopTime - startTime;
 			output("Operation completed in ", Long.toString(elapsedTime),
 					"ms (excluding connect)");
 		} finally {
+			awaitAsyncSendConfirmations();
 			try {
 				if (sess != null) {
 					sess.close();
@@ -210,6 +355,14 @@ public class A {
 			} catch (JMSException e2) {
 				e2.printStackTrace();
 			}
+			// Pending asynchronous sends are flushed when the connection closes.
+			if (isAsyncSend()) {
+				output(asyncSendErrors.get(), " asynchronous send errors");
+			}
+			output.flush();
+			closeRecordOutput();
+			// The next run may not profile
+			profiler = null;
 		}
 		logger.debug("Active threads {}", Thread.activeCount());
 		logger.debug("At the end of the road");
@@ -228,10 +381,20 @@ public class A {
 			executeListQueues(cmdLine);
 		} else if (cmdLine.hasOption(CMD_READ_FOLDER)) {
 			executeReadFolder(cmdLine);
+		} else if (cmdLine.hasOption(CMD_DIFF)) {
+			executeDiff(cmdLine);
+		} else if (cmdLine.hasOption(CMD_SAMPLE)) {
+			executeSample(cmdLine);
 		} else if (cmdLine.hasOption(CMD_WRITE_DUMP)) {
 			executeWriteDump(cmdLine);
 		} else if (cmdLine.hasOption(CMD_RESTORE_DUMP)) {
 			executeReadDump(cmdLine);
+		} else if (cmdLine.hasOption(CMD_PING)) {
+			executePing(cmdLine);
+		} else if (cmdLine.hasOption(CMD_RESPOND)) {
+			executeRespond(cmdLine);
+		} else if (cmdLine.hasOption(CMD_PURGE)) {
+			executePurge(cmdLine);
 		} /*else if (cmdLine.hasOption(CMD_HTTP_BRIDGE)) {
 			executeStartHttpBridge(cmdLine);
 		} */else {
@@ -241,10 +404,39 @@ public class A {
 
 	protected void executeMove(CommandLine cmdLine) throws JMSException,
 			UnsupportedEncodingException, ScriptException, IOException {
-		
+		final String source = cmdLine.getOptionValue(CMD_MOVE_QUEUE);
+		final long movedOnBroker = executeOnBroker(cmdLine, (management, selector, count) ->
+				management.move(source, cmdLine.getArgs()[0], selector, count));
+		if (movedOnBroker >= 0) {
+			output(movedOnBroker, " msgs moved from ", source, " to ", cmdLine.getArgs()[0], " on the broker");
+			return;
+		}
+		int consumers = Integer.parseInt(cmdLine.getOptionValue(CMD_CONSUMERS, "1"));
+		if (cmdLine.hasOption(CMD_JOURNAL)) {
+			if (consumers > 1 || cmdLine.hasOption(CMD_GROUP_LANES)) {
+				output("Option --" + CMD_JOURNAL + " cannot be used with --" + CMD_CONSUMERS + " or --"
+						+ CMD_GROUP_LANES);
+			} else {
+				executeJournaledMove(cmdLine);
+			}
+			return;
+		}
+		if (consumers > 1) {
+			executeMoveConcurrently(cmdLine, consumers);
+			return;
+		}
+		if (cmdLine.hasOption(CMD_GROUP_LANES)) {
+			final int lanes = Integer.parseInt(cmdLine.getOptionValue(CMD_GROUP_LANES));
+			if (lanes < 1) {
+				output("Option --" + CMD_GROUP_LANES + " must be at least 1");
+			} else {
+				executeMoveByGroup(cmdLine, lanes);
+			}
+			return;
+		}
+
 		// Should be able to support some kind of Move operation even though the session is not transacted.
-		boolean hasTransactionalSession = tsess != null;
-		Session moveSession = hasTransactionalSession ? tsess : sess;
+		Session moveSession = tsess != null ? tsess : sess;
 		
 		Queue tq = moveSession.createQueue(cmdLine.getArgs()[0]);
 		Queue q = moveSession.createQueue(cmdLine.getOptionValue(CMD_MOVE_QUEUE)); // Source
@@ -260,29 +452,594 @@ public class A {
 				DEFAULT_COUNT_ALL));
 		long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT,
 				DEFAULT_WAIT));
+		// Commit every message, unless a larger batch is requested.
+		CommitBatcher batcher = createCommitBatcher(cmdLine, moveSession, 1);
 		int j = 0;
-		while (j < count || count == 0) {
-			Message msg = mq.receive(wait);
-			if (msg == null) {
-				output("No message received, due to the timeout expiring or the consumer is closed");
-				break;
-			} else {
-				sendWithOptionalTransformer(cmdLine, msg, mp);
-				if( hasTransactionalSession ){
-					moveSession.commit();
+		try {
+			while (j < count || count == 0) {
+				Message msg = mq.receive(wait);
+				if (msg == null) {
+					output("No message received, due to the timeout expiring or the consumer is closed");
+					break;
+				} else {
+					sendWithOptionalTransformer(cmdLine, msg, mp);
+					batcher.add(msg);
+					++j;
 				}
-				++j;
 			}
+			batcher.commit();
+		} catch (JMSException | ScriptException | IOException | RuntimeException e) {
+			batcher.rollback();
+			throw e;
 		}
 		output(j, " msgs moved from ", cmdLine.getOptionValue(CMD_MOVE_QUEUE),
 				" to ", cmdLine.getArgs()[0]);
+		outputCommits(batcher);
+	}
+
+	/**
+	 * Moves messages with competing consumers, each with its own session, consumer and producer.
+	 * Each message is claimed before it is received, so no more than count messages are moved in total.
+	 */
+	protected void executeMoveConcurrently(final CommandLine cmdLine, final int consumers) throws JMSException,
+			ScriptException, IOException {
+		final int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL));
+		final long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT, DEFAULT_WAIT));
+		final AtomicLong claims = new AtomicLong();
+		List<WorkerStats> stats = runConsumers(consumers,
+				(name, workerTransformer) -> runMoveConsumer(name, workerTransformer, count, wait, claims, cmdLine));
+		outputWorkerStats(stats, "moved");
+		long moved = 0;
+		for (WorkerStats worker : stats) {
+			moved += worker.getCount();
+		}
+		output(moved, " msgs moved from ", cmdLine.getOptionValue(CMD_MOVE_QUEUE), " to ", cmdLine.getArgs()[0]);
+		rethrowFirstError(stats);
+	}
+
+	/**
+	 * Moves messages until the count is claimed or the source is empty.
+	 * Errors are recorded in the statistics, after the pending batch is rolled back.
+	 */
+	protected WorkerStats runMoveConsumer(final String name, final MessageDumpTransformer workerTransformer,
+			final int count, final long wait, final AtomicLong claims, final CommandLine cmdLine) throws JMSException {
+		final Session session = createSession(conn, tsess != null, Session.AUTO_ACKNOWLEDGE);
+		final WorkerStats stats = new WorkerStats(name);
+		final CommitBatcher batcher = createCommitBatcher(cmdLine, session, 1);
+		Message inHand = null;
+		try {
+			MessageProducer mp = session.createProducer(session.createQueue(cmdLine.getArgs()[0]));
+			Queue q = session.createQueue(cmdLine.getOptionValue(CMD_MOVE_QUEUE));
+			MessageConsumer mq = cmdLine.hasOption(CMD_SELECTOR)
+					? session.createConsumer(q, cmdLine.getOptionValue(CMD_SELECTOR)) : session.createConsumer(q);
+			while (claim(claims, count)) {
+				inHand = mq.receive(wait);
+				if (inHand == null) {
+					release(claims, count);
+					break;
+				}
+				sendWithOptionalTransformer(cmdLine, inHand, mp, workerTransformer, session);
+				batcher.add(inHand);
+				inHand = null;
+				stats.increment();
+			}
+			batcher.commit();
+		} catch (JMSException | ScriptException | IOException | RuntimeException e) {
+			final int pending = batcher.getPendingMessages();
+			try {
+				batcher.rollback();
+			} catch (JMSException rollbackError) {
+				logger.warn("Rollback failed", rollbackError);
+			}
+			stats.fail(e, pending, pending + (inHand != null ? 1 : 0));
+		} finally {
+			stats.stop();
+			stats.setCommits(batcher.getBatches());
+			session.close();
+		}
+		return stats;
+	}
+
+	/**
+	 * Moves messages like executeMove, and records each message in a journal before it is acknowledged or
+	 * committed on the source. Without transactions, messages are consumed with client acknowledge, in batches
+	 * of --commit-batch. When the move is run again with the same journal, messages that were sent but not
+	 * acknowledged are acknowledged without being sent again.
+	 */
+	protected void executeJournaledMove(final CommandLine cmdLine) throws JMSException, ScriptException,
+			IOException {
+		final int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL));
+		final long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT, DEFAULT_WAIT));
+		final int batchSize = Integer.parseInt(cmdLine.getOptionValue(CMD_COMMIT_BATCH, "1"));
+		final Session session = tsess != null ? tsess : createSession(conn, false, Session.CLIENT_ACKNOWLEDGE);
+		final String source = cmdLine.getOptionValue(CMD_MOVE_QUEUE);
+		try (MoveJournal journal = new MoveJournal(new File(cmdLine.getOptionValue(CMD_JOURNAL)))) {
+			if (journal.getMoved() > 0 || journal.getResumedInDoubt() > 0) {
+				output("Resuming move. ", journal.getMoved(), " msgs moved before, ", journal.getResumedInDoubt(),
+						" msgs sent but not acknowledged");
+			}
+			MessageProducer mp = session.createProducer(session.createQueue(cmdLine.getArgs()[0]));
+			Queue q = session.createQueue(source);
+			MessageConsumer mq = cmdLine.hasOption(CMD_SELECTOR)
+					? session.createConsumer(q, cmdLine.getOptionValue(CMD_SELECTOR)) : session.createConsumer(q);
+			CommitBatcher batcher = createCommitBatcher(cmdLine, session, 1);
+			Acknowledger acknowledger = new Acknowledger(session, batchSize, 0);
+			int moved = 0;
+			int skipped = 0;
+			try {
+				while (moved + skipped < count || count == 0) {
+					Message msg = mq.receive(wait);
+					if (msg == null) {
+						output("No message received, due to the timeout expiring or the consumer is closed");
+						break;
+					}
+					final String id = msg.getJMSMessageID();
+					if (journal.isInDoubt(id)) {
+						journal.skipped(id);
+						skipped++;
+					} else {
+						sendWithOptionalTransformer(cmdLine, msg, mp);
+						journal.sent(id, batcher.isTransacted());
+						moved++;
+					}
+					final long batches = batcher.getBatches();
+					final long acknowledgements = acknowledger.getAcknowledgements();
+					batcher.add(msg);
+					acknowledger.add(msg);
+					if (batcher.getBatches() > batches || acknowledger.getAcknowledgements() > acknowledgements) {
+						journal.checkpoint();
+					}
+				}
+				batcher.commit();
+				acknowledger.acknowledge();
+				journal.checkpoint();
+			} catch (JMSException | ScriptException | IOException | RuntimeException e) {
+				batcher.rollback();
+				throw e;
+			}
+			output(moved, " msgs moved from ", source, " to ", cmdLine.getArgs()[0]);
+			if (skipped > 0) {
+				output(skipped, " msgs were moved before but not acknowledged. They were acknowledged now");
+			}
+			output(journal.getMoved(), " msgs moved in total according to the journal");
+			outputCommits(batcher);
+		} finally {
+			if (session != tsess) {
+				session.close();
+			}
+		}
+	}
+
+	/**
+	 * Moves messages with one consumer, which hands them to a number of lanes by JMSXGroupID. Each lane sends in
+	 * order with its own transacted session, so messages of a group keep their order. Messages without a group are
+	 * spread over the lanes in turn.
+	 * The consumer acknowledges a batch once every lane has committed its part. If a lane fails, OpenWire and
+	 * Artemis acknowledge the messages that other lanes committed one by one, and recover the rest to the source.
+	 * Other providers acknowledge all received messages at once, so the whole batch is recovered. The messages
+	 * that other lanes committed are then on both queues, and their IDs are printed before the move fails.
+	 */
+	protected void executeMoveByGroup(final CommandLine cmdLine, final int lanes) throws JMSException,
+			ScriptException, IOException {
+		final int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL));
+		final long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT, DEFAULT_WAIT));
+		final int batchSize = Integer.parseInt(cmdLine.getOptionValue(CMD_COMMIT_BATCH, DEFAULT_LANE_BATCH));
+		final int ackMode = getIndividualAcknowledgeMode();
+		final boolean individualAck = ackMode != Session.CLIENT_ACKNOWLEDGE;
+		final Session session = createSession(conn, false, ackMode);
+		final List<String> duplicated = new ArrayList<>();
+		final List<BlockingQueue<Object>> laneQueues = new ArrayList<>(lanes);
+		final ExecutorService executor = Executors.newFixedThreadPool(lanes);
+		final Engine engine = cmdLine.hasOption(CMD_TRANSFORM_SCRIPT) ? createSharedScriptEngine() : null;
+		List<WorkerStats> stats;
+		try {
+			List<Future<WorkerStats>> results = new ArrayList<>(lanes);
+			for (int l = 0; l < lanes; l++) {
+				final int lane = l;
+				final String name = "Lane " + (l + 1);
+				final BlockingQueue<Object> laneQueue = new LinkedBlockingQueue<>();
+				final MessageDumpTransformer laneTransformer = engine != null ? new MessageDumpTransformer(engine) : null;
+				laneQueues.add(laneQueue);
+				results.add(executor.submit(() -> runMoveLane(name, lane, laneQueue, laneTransformer, cmdLine)));
+			}
+			Queue q = session.createQueue(cmdLine.getOptionValue(CMD_MOVE_QUEUE));
+			MessageConsumer mq = cmdLine.hasOption(CMD_SELECTOR)
+					? session.createConsumer(q, cmdLine.getOptionValue(CMD_SELECTOR)) : session.createConsumer(q);
+			int received = 0;
+			int ungrouped = 0;
+			boolean more = true;
+			while (more) {
+				Message last = null;
+				int batch = 0;
+				while (batch < batchSize && (received < count || count == 0)) {
+					Message msg = mq.receive(wait);
+					if (msg == null) {
+						more = false;
+						break;
+					}
+					final String group = msg.getStringProperty(GROUP_ID_PROPERTY);
+					final int lane = group != null ? Math.floorMod(group.hashCode(), lanes) : ungrouped++ % lanes;
+					laneQueues.get(lane).add(msg);
+					last = msg;
+					batch++;
+					received++;
+				}
+				more &= received < count || count == 0;
+				if (last == null) {
+					continue;
+				}
+				final LaneCheckpoint checkpoint = new LaneCheckpoint(lanes, false);
+				final boolean committed = checkpointLanes(laneQueues, results, checkpoint);
+				if (individualAck) {
+					for (Message msg : checkpoint.committed) {
+						msg.acknowledge();
+					}
+				} else if (committed) {
+					// Acknowledges all messages received by the session so far
+					last.acknowledge();
+				} else {
+					for (Message msg : checkpoint.committed) {
+						duplicated.add(msg.getJMSMessageID());
+					}
+				}
+				if (!committed) {
+					session.recover();
+					more = false;
+				}
+			}
+			checkpointLanes(laneQueues, results, new LaneCheckpoint(lanes, true));
+			stats = awaitWorkers(results);
+		} finally {
+			executor.shutdownNow();
+			if (engine != null) {
+				engine.close();
+			}
+			session.close();
+		}
+		outputWorkerStats(stats, "moved");
+		long moved = 0;
+		for (WorkerStats worker : stats) {
+			moved += worker.getCount();
+		}
+		output(moved, " msgs moved from ", cmdLine.getOptionValue(CMD_MOVE_QUEUE), " to ", cmdLine.getArgs()[0]);
+		if (!duplicated.isEmpty()) {
+			output(duplicated.size(), " msgs committed by other lanes before the failure are now on both queues: ",
+					String.join(", ", duplicated));
+		}
+		rethrowFirstError(stats);
+	}
+
+	/**
+	 * Asks each lane to commit and waits for all of them. A lane that has ended, i.e. by an Error, never answers,
+	 * so it fails the checkpoint. The messages that lanes committed are collected in the checkpoint.
+	 * @return true if every lane committed
+	 */
+	private boolean checkpointLanes(final List<BlockingQueue<Object>> laneQueues,
+			final List<Future<WorkerStats>> lanes, final LaneCheckpoint checkpoint) throws JMSException {
+		for (BlockingQueue<Object> laneQueue : laneQueues) {
+			laneQueue.add(checkpoint);
+		}
+		try {
+			while (!checkpoint.latch.await(100, TimeUnit.MILLISECONDS)) {
+				for (int lane = 0; lane < lanes.size(); lane++) {
+					if (lanes.get(lane).isDone() && checkpoint.answered.get(lane) == 0) {
+						return false;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted while waiting for lanes to commit");
+		}
+		return !checkpoint.failed.get();
+	}
+
+	/**
+	 * Sends the messages of a lane in order, and commits at each checkpoint.
+	 * After an error, the lane rolls back and skips messages until the last checkpoint, which it always answers.
+	 */
+	protected WorkerStats runMoveLane(final String name, final int lane, final BlockingQueue<Object> laneQueue,
+			final MessageDumpTransformer laneTransformer, final CommandLine cmdLine)
+			throws JMSException, InterruptedException {
+		final WorkerStats stats = new WorkerStats(name);
+		Session session = null;
+		MessageProducer mp = null;
+		try {
+			session = createSession(conn, tsess != null, Session.AUTO_ACKNOWLEDGE);
+			mp = session.createProducer(session.createQueue(cmdLine.getArgs()[0]));
+		} catch (JMSException e) {
+			stats.fail(e, 0, 0);
+		}
+		try {
+			// Messages sent since the last checkpoint
+			final List<Message> sent = new ArrayList<>();
+			long commits = 0;
+			while (true) {
+				final Object item = laneQueue.take();
+				if (item instanceof LaneCheckpoint) {
+					final LaneCheckpoint checkpoint = (LaneCheckpoint) item;
+					if (stats.getError() == null && !sent.isEmpty() && session.getTransacted()) {
+						try {
+							session.commit();
+							commits++;
+						} catch (JMSException e) {
+							stats.fail(e, sent.size(), sent.size());
+							sent.clear();
+						}
+					}
+					checkpoint.committed.addAll(sent);
+					sent.clear();
+					if (stats.getError() != null) {
+						checkpoint.failed.set(true);
+					}
+					checkpoint.answered.set(lane, 1);
+					checkpoint.latch.countDown();
+					if (checkpoint.last) {
+						break;
+					}
+				} else if (stats.getError() == null) {
+					try {
+						sendWithOptionalTransformer(cmdLine, (Message) item, mp, laneTransformer, session);
+						sent.add((Message) item);
+						stats.increment();
+					} catch (JMSException | ScriptException | IOException | RuntimeException e) {
+						rollbackLane(session);
+						stats.fail(e, sent.size(), sent.size() + 1);
+						if (session.getTransacted()) {
+							sent.clear();
+						}
+					}
+				}
+			}
+			stats.setCommits(commits);
+		} finally {
+			stats.stop();
+			if (session != null) {
+				session.close();
+			}
+		}
+		return stats;
+	}
+
+	private void rollbackLane(final Session session) {
+		try {
+			if (session.getTransacted()) {
+				session.rollback();
+			}
+		} catch (JMSException e) {
+			logger.warn("Rollback failed", e);
+		}
+	}
+
+	// Marks the end of a batch in each lane. The last one also stops the lanes.
+	private static class LaneCheckpoint {
+		final CountDownLatch latch;
+		final AtomicBoolean failed = new AtomicBoolean();
+		// Received messages that the lanes have sent to the target
+		final ConcurrentLinkedQueue<Message> committed = new ConcurrentLinkedQueue<>();
+		// 1 for each lane that has answered
+		final AtomicIntegerArray answered;
+		final boolean last;
+
+		LaneCheckpoint(final int lanes, final boolean last) {
+			this.latch = new CountDownLatch(lanes);
+			this.answered = new AtomicIntegerArray(lanes);
+			this.last = last;
+		}
+	}
+
+	/**
+	 * Work of a consumer thread, with its own script context if a transform script is given.
+	 */
+	protected interface ConsumerTask {
+		WorkerStats run(String name, MessageDumpTransformer workerTransformer) throws Exception;
+	}
+
+	protected List<WorkerStats> runConsumers(final int consumers, final ConsumerTask task) throws JMSException {
+		ExecutorService executor = Executors.newFixedThreadPool(consumers);
+		Engine engine = cmdLine.hasOption(CMD_TRANSFORM_SCRIPT) ? createSharedScriptEngine() : null;
+		try {
+			List<Future<WorkerStats>> results = new ArrayList<>(consumers);
+			for (int w = 0; w < consumers; w++) {
+				final String name = "Consumer " + (w + 1);
+				final MessageDumpTransformer workerTransformer = engine != null ? new MessageDumpTransformer(engine) : null;
+				results.add(executor.submit(() -> task.run(name, workerTransformer)));
+			}
+			return awaitWorkers(results);
+		} finally {
+			executor.shutdownNow();
+			if (engine != null) {
+				engine.close();
+			}
+		}
+	}
+
+	// Claims one of count messages for a worker. A count of 0 means no limit. A failed claim takes nothing, so a
+	// released claim can be claimed again.
+	private static boolean claim(final AtomicLong claims, final int count) {
+		if (count == 0) {
+			return true;
+		}
+		long claimed;
+		do {
+			claimed = claims.get();
+			if (claimed >= count) {
+				return false;
+			}
+		} while (!claims.compareAndSet(claimed, claimed + 1));
+		return true;
+	}
+
+	// Gives back a claim that did not get a message.
+	private static void release(final AtomicLong claims, final int count) {
+		if (count > 0) {
+			claims.decrementAndGet();
+		}
+	}
+
+	protected void rethrowFirstError(final List<WorkerStats> stats) throws JMSException, ScriptException, IOException {
+		for (WorkerStats worker : stats) {
+			Exception e = worker.getError();
+			if (e instanceof JMSException) {
+				throw (JMSException) e;
+			} else if (e instanceof ScriptException) {
+				throw (ScriptException) e;
+			} else if (e instanceof IOException) {
+				throw (IOException) e;
+			} else if (e != null) {
+				throw (RuntimeException) e;
+			}
+		}
+	}
+
+	/**
+	 * Copies a browsed message, if it matches the search.
+	 * @param search the search, or null to copy all messages
+	 * @return true if the message was copied
+	 */
+	protected boolean copyMessage(final Message msg, final MessageProducer mp, final CommitBatcher batcher,
+			final PayloadSearch search, final CommandLine cmdLine) throws JMSException, ScriptException, IOException {
+		if (search != null && !search.matches(msg)) {
+			return false;
+		}
+		sendWithOptionalTransformer(cmdLine, msg, mp);
+		batcher.add(msg);
+		return true;
+	}
+
+	/**
+	 * @return a search for the values of -f and the regexes of --find-regex, or null if there are none
+	 */
+	protected PayloadSearch createPayloadSearch(final CommandLine cmdLine) {
+		if (!cmdLine.hasOption(CMD_FIND) && !cmdLine.hasOption(CMD_FIND_REGEX)) {
+			return null;
+		}
+		final String[] values = cmdLine.getOptionValues(CMD_FIND);
+		final String[] regexes = cmdLine.getOptionValues(CMD_FIND_REGEX);
+		return new PayloadSearch(values != null ? Arrays.asList(values) : Collections.<String>emptyList(),
+				regexes != null ? Arrays.asList(regexes) : Collections.<String>emptyList(),
+				Charset.forName(cmdLine.getOptionValue(CMD_ENCODING, Charset.defaultCharset().name())));
+	}
+
+	/**
+	 * Removes messages from a queue, on the broker with --server-side, or else by consuming them.
+	 */
+	protected void executePurge(final CommandLine cmdLine) throws JMSException, IOException {
+		final String queue = cmdLine.getArgs()[0];
+		final long removedOnBroker = executeOnBroker(cmdLine, (management, selector, count) ->
+				management.purge(queue, selector, count));
+		if (removedOnBroker >= 0) {
+			output(removedOnBroker, " msgs purged from ", queue, " on the broker");
+			return;
+		}
+		final Session purgeSession = tsess != null ? tsess : sess;
+		final Queue q = purgeSession.createQueue(queue);
+		final MessageConsumer mq = cmdLine.hasOption(CMD_SELECTOR)
+				? purgeSession.createConsumer(q, cmdLine.getOptionValue(CMD_SELECTOR)) : purgeSession.createConsumer(q);
+		final int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL));
+		final long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT, DEFAULT_WAIT));
+		final CommitBatcher batcher = createCommitBatcher(cmdLine, purgeSession, Integer.parseInt(DEFAULT_PURGE_BATCH));
+		int i = 0;
+		try {
+			while (i < count || count == 0) {
+				Message msg = mq.receive(wait);
+				if (msg == null) {
+					break;
+				}
+				batcher.add(msg);
+				i++;
+			}
+			batcher.commit();
+		} catch (JMSException | RuntimeException e) {
+			batcher.rollback();
+			throw e;
+		} finally {
+			mq.close();
+		}
+		output(i, " msgs purged from ", queue);
+	}
+
+	/**
+	 * A broker side operation, given the selector and the count.
+	 */
+	protected interface BrokerOperation {
+		long run(BrokerManagement management, String selector, int count) throws JMSException, IOException;
+	}
+
+	/**
+	 * Runs an operation on the broker if --server-side is given and the broker can do it.
+	 * @return messages affected, or -1 if the client has to do the work
+	 */
+	protected long executeOnBroker(final CommandLine cmdLine, final BrokerOperation operation)
+			throws JMSException, IOException {
+		if (!cmdLine.hasOption(CMD_SERVER_SIDE)) {
+			return -1;
+		}
+		long result = -1;
+		if (!cmdLine.hasOption(CMD_TRANSFORM_SCRIPT)) {
+			try (BrokerManagement management = createBrokerManagement(cmdLine)) {
+				if (management != null) {
+					result = operation.run(management, cmdLine.getOptionValue(CMD_SELECTOR),
+							Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL)));
+				}
+			}
+		}
+		if (result < 0) {
+			output("This cannot be done on the broker side. Falling back to the client");
+		}
+		return result;
+	}
+
+	/**
+	 * @return the management of the broker, or null if A cannot manage this broker or cannot connect to JMX.
+	 */
+	protected BrokerManagement createBrokerManagement(final CommandLine cmdLine) throws JMSException, IOException {
+		if (cmdLine.hasOption(CMD_JMX_URL)) {
+			try {
+				return new JmxBrokerManagement(cmdLine.getOptionValue(CMD_JMX_URL), user, password);
+			} catch (IOException e) {
+				output("Cannot connect to JMX at ", cmdLine.getOptionValue(CMD_JMX_URL), ": ", e.getMessage());
+				return null;
+			}
+		} else if (cf instanceof org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory) {
+			return new ArtemisBrokerManagement(createSession(conn, false, Session.AUTO_ACKNOWLEDGE),
+					Long.parseLong(cmdLine.getOptionValue(CMD_SERVER_TIMEOUT, DEFAULT_SERVER_TIMEOUT)));
+		}
+		return null;
 	}
 
 	protected void executeCopy(CommandLine cmdLine) throws JMSException, ScriptException, IOException {
+		final String source = cmdLine.getOptionValue(CMD_COPY_QUEUE);
+		final long copiedOnBroker = executeOnBroker(cmdLine, (management, selector, count) ->
+				management.copy(source, cmdLine.getArgs()[0], selector, count));
+		if (copiedOnBroker >= 0) {
+			output(copiedOnBroker, " msgs copied from ", source, " to ", cmdLine.getArgs()[0], " on the broker");
+			return;
+		}
+		if (cmdLine.hasOption(CMD_PRODUCERS)) {
+			executePipelinedCopy(cmdLine, source, cmdLine.getArgs()[0]);
+			return;
+		}
 		Queue tq = sess.createQueue(cmdLine.getArgs()[0]);
 		Queue q = sess.createQueue(cmdLine.getOptionValue(CMD_COPY_QUEUE)); // Source
 		QueueBrowser qb = null;
-		MessageProducer mp = sess.createProducer(tq);
+		// Browsing is never transactional, but the copies can be sent in transacted batches.
+		Session sendSession = isCommitBatching(cmdLine) && tsess != null ? tsess : sess;
+		MessageProducer mp = sendSession.createProducer(tq);
+		CommitBatcher batcher = createCommitBatcher(cmdLine, sendSession, 0);
+		final PayloadSearch search = createPayloadSearch(cmdLine);
+		if (cmdLine.hasOption(CMD_PAGE_SIZE)) {
+			final AtomicLong copied = new AtomicLong();
+			browsePaged(cmdLine, source, msg -> {
+				if (copyMessage(msg, mp, batcher, search, cmdLine)) {
+					copied.incrementAndGet();
+				}
+			});
+			batcher.commit();
+			output(copied.get(), " msgs copied from ", source, " to ", cmdLine.getArgs()[0]);
+			outputCommits(batcher);
+			return;
+		}
 		if (cmdLine.hasOption(CMD_SELECTOR)) { // Selectors
 			qb = sess.createBrowser(q, cmdLine.getOptionValue(CMD_SELECTOR));
 		} else {
@@ -298,50 +1055,213 @@ public class A {
 			if (msg == null) {
 				break;
 			} else {
-				// if search is enabled
-				if (cmdLine.hasOption(CMD_FIND)) {
-					if (msg instanceof TextMessage) {
-						String haystack = ((TextMessage) msg).getText();
-						String needle = cmdLine.getOptionValue(CMD_FIND);
-						if (haystack != null && haystack.contains(needle)) {
-							sendWithOptionalTransformer(cmdLine, msg, mp);
-							++j;
-						}
-					}
-				} else {
-					sendWithOptionalTransformer(cmdLine, msg, mp);
+				if (copyMessage(msg, mp, batcher, search, cmdLine)) {
 					++j;
 				}
 				++i;
 			}
 		}
+		batcher.commit();
 		output(j, " msgs copied from ", cmdLine.getOptionValue(CMD_COPY_QUEUE),
 				" to ", cmdLine.getArgs()[0]);
+		outputCommits(batcher);
+	}
+
+	/**
+	 * Copies a queue in a pipeline of stages, connected by bounded queues. This thread browses. If a search or a
+	 * transform script is given, --transformers threads filter and transform. Then --producers threads send, each
+	 * with its own connection. A stage that falls behind makes the stages before it wait, so memory use is bounded.
+	 * Each stage reports how long it was idle, waiting for input, and blocked, waiting for the next stage.
+	 * The order of the messages is only kept with one transformer and one producer.
+	 */
+	protected void executePipelinedCopy(final CommandLine cmdLine, final String source, final String target)
+			throws JMSException, ScriptException, IOException {
+		final int producers = Integer.parseInt(cmdLine.getOptionValue(CMD_PRODUCERS));
+		final PayloadSearch search = createPayloadSearch(cmdLine);
+		final boolean filtering = search != null || cmdLine.hasOption(CMD_TRANSFORM_SCRIPT);
+		final int transformers = filtering ? Integer.parseInt(cmdLine.getOptionValue(CMD_TRANSFORMERS, "1")) : 0;
+		// Marks the end of the messages for a stage. Compared by identity.
+		final Message endOfCopy = sess.createMessage();
+		final BlockingQueue<Message> browsed = new ArrayBlockingQueue<>(BATCH_QUEUE_SIZE);
+		final BlockingQueue<Message> toSend = filtering ? new ArrayBlockingQueue<>(BATCH_QUEUE_SIZE) : browsed;
+		ExecutorService executor = Executors.newFixedThreadPool(producers + transformers);
+		Engine engine = cmdLine.hasOption(CMD_TRANSFORM_SCRIPT) ? createSharedScriptEngine() : null;
+		try {
+			final List<Future<WorkerStats>> senders = new ArrayList<>(producers);
+			for (int w = 0; w < producers; w++) {
+				final String name = "Producer " + (w + 1);
+				senders.add(executor.submit(() -> runCopyProducer(name, target, toSend, endOfCopy, cmdLine)));
+			}
+			final List<Future<WorkerStats>> filters = new ArrayList<>(transformers);
+			for (int w = 0; w < transformers; w++) {
+				final String name = "Transformer " + (w + 1);
+				final MessageDumpTransformer workerTransformer = engine != null ? new MessageDumpTransformer(engine) : null;
+				filters.add(executor.submit(() -> runCopyTransformer(name, browsed, toSend, endOfCopy, senders,
+						search, workerTransformer, cmdLine)));
+			}
+			final List<Future<WorkerStats>> next = filtering ? filters : senders;
+			final WorkerStats browserStats = new WorkerStats("Browser");
+			try {
+				browseQueue(cmdLine, source, msg -> {
+					if (!handOff(browsed, msg, next, browserStats)) {
+						throw new CancellationException();
+					}
+					browserStats.increment();
+				});
+			} catch (CancellationException e) {
+				// A later stage stopped early. Its error is thrown when the stage is awaited.
+			} finally {
+				browserStats.stop();
+				endStage(browsed, endOfCopy, next);
+			}
+			final List<WorkerStats> filterStats = awaitWorkers(filters);
+			if (filtering) {
+				endStage(toSend, endOfCopy, senders);
+			}
+			final List<WorkerStats> sendStats = awaitWorkers(senders);
+			outputWorker(browserStats, "browsed");
+			for (WorkerStats worker : filterStats) {
+				outputWorker(worker, "passed on");
+			}
+			outputWorkerStats(sendStats, "copied");
+			long copied = 0;
+			for (WorkerStats worker : sendStats) {
+				copied += worker.getCount();
+			}
+			output(copied, " msgs copied from ", source, " to ", target);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted while copying");
+		} finally {
+			executor.shutdownNow();
+			if (engine != null) {
+				engine.close();
+			}
+		}
+	}
+
+	protected WorkerStats runCopyTransformer(final String name, final BlockingQueue<Message> in,
+			final BlockingQueue<Message> out, final Message end, final List<Future<WorkerStats>> next,
+			final PayloadSearch search, final MessageDumpTransformer workerTransformer, final CommandLine cmdLine)
+			throws JMSException, ScriptException, IOException, InterruptedException {
+		// Only used to create the transformed messages
+		final Session workerSess = createSession(conn, false, Session.AUTO_ACKNOWLEDGE);
+		try {
+			final WorkerStats stats = new WorkerStats(name);
+			Message msg;
+			while ((msg = take(in, stats)) != end) {
+				if (search != null && !search.matches(msg)) {
+					continue;
+				}
+				if (workerTransformer != null) {
+					msg = transformMessage(workerTransformer, workerSess, msg,
+							cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
+				}
+				if (!handOff(out, msg, next, stats)) {
+					break;
+				}
+				stats.increment();
+			}
+			stats.stop();
+			return stats;
+		} finally {
+			workerSess.close();
+		}
+	}
+
+	protected WorkerStats runCopyProducer(final String name, final String target, final BlockingQueue<Message> in,
+			final Message end, final CommandLine cmdLine) throws JMSException, InterruptedException {
+		Connection workerConn = createConnection();
+		try {
+			boolean transacted = isCommitBatching(cmdLine) && tsess != null;
+			Session workerSess = createSession(workerConn, transacted, Session.AUTO_ACKNOWLEDGE);
+			MessageProducer mp = workerSess.createProducer(workerSess.createQueue(target));
+			CommitBatcher batcher = createCommitBatcher(cmdLine, workerSess, 0);
+			WorkerStats stats = new WorkerStats(name);
+			Message msg;
+			while ((msg = take(in, stats)) != end) {
+				mp.send(msg);
+				countSend(mp);
+				batcher.add(msg);
+				stats.increment();
+			}
+			batcher.commit();
+			stats.stop();
+			stats.setCommits(batcher.getBatches());
+			return stats;
+		} finally {
+			awaitAsyncSendConfirmations();
+			workerConn.close();
+		}
+	}
+
+	// Takes the next message of a stage, counting the wait as idle time.
+	private static Message take(final BlockingQueue<Message> queue, final WorkerStats stats)
+			throws InterruptedException {
+		final long start = System.nanoTime();
+		final Message msg = queue.take();
+		stats.addIdle(System.nanoTime() - start);
+		return msg;
+	}
+
+	/**
+	 * Puts a message on the queue of the next stage of a pipeline, counting the wait as blocked time. Gives up
+	 * if a worker of the next stage is done, which only happens before the end of the messages if it failed.
+	 * @return true if the message was queued
+	 */
+	private static boolean handOff(final BlockingQueue<Message> queue, final Message msg,
+			final List<Future<WorkerStats>> workers, final WorkerStats stats) throws InterruptedException {
+		if (queue.offer(msg)) {
+			return true;
+		}
+		final long start = System.nanoTime();
+		try {
+			while (!queue.offer(msg, 100, TimeUnit.MILLISECONDS)) {
+				for (Future<WorkerStats> worker : workers) {
+					if (worker.isDone()) {
+						return false;
+					}
+				}
+			}
+			return true;
+		} finally {
+			stats.addBlocked(System.nanoTime() - start);
+		}
+	}
+
+	// Tells each worker of a stage that there are no more messages. Gives up once all workers are done.
+	private static void endStage(final BlockingQueue<Message> queue, final Message end,
+			final List<Future<WorkerStats>> workers) throws InterruptedException {
+		for (int w = 0; w < workers.size(); w++) {
+			while (!queue.offer(end, 100, TimeUnit.MILLISECONDS)) {
+				if (workers.stream().allMatch(Future::isDone)) {
+					return;
+				}
+			}
+		}
 	}
 
 	protected void sendWithOptionalTransformer(CommandLine cmdLine, Message msg, MessageProducer mp) throws JMSException, ScriptException, IOException {
+		sendWithOptionalTransformer(cmdLine, msg, mp, transformer, sess);
+	}
+
+	protected void sendWithOptionalTransformer(CommandLine cmdLine, Message msg, MessageProducer mp,
+			MessageDumpTransformer messageTransformer, Session session) throws JMSException, ScriptException, IOException {
 		if( cmdLine.hasOption(CMD_TRANSFORM_SCRIPT) ) {
-			mp.send(transformMessage(msg, cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT)));
+			mp.send(transformMessage(messageTransformer, session, msg, cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT)));
+			countSend(mp);
 		} else {
 			mp.send(msg);
+			countSend(mp);
 		}
 
 	}
 
 	protected void connect(String url, String user, String password,
 			Protocol protocol, String jndi, String clientid, boolean noTransactionSupport) throws Exception {
+		this.protocol = protocol;
 		if (StringUtils.isBlank(jndi)) {
-			switch (protocol) {
-			case AMQP:
-				cf = createAMQPCF(url);
-				break;
-			case OpenWire:
-				cf = new ActiveMQConnectionFactory(url);
-				break;
-			case ArtemisCore:
-				cf = ActiveMQJMSClient.createConnectionFactory(url, "");
-				break;
-			}
+			cf = createConnectionFactory(url, protocol);
 		} else {
 			// Initialize CF via JNDI.
 			Properties properties = new Properties();
@@ -372,24 +1292,194 @@ public class A {
 				throw new RuntimeException(e);
 			}
 		}
+		configureConnectionFactory(cf);
 
-		if (user != null && password != null) {
-			conn = cf.createConnection(user, password);
-		} else {
-			conn = cf.createConnection();
-		}
-		if(clientid != null) {
-			conn.setClientID(clientid);
-		}
-		sess = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		this.user = user;
+		this.password = password;
+		conn = createConnection(clientid);
+		sess = createSession(conn, false, Session.AUTO_ACKNOWLEDGE);
 		if (noTransactionSupport) { // Some providers cannot create transactional sessions. I.e. Azure Service Bus
 			tsess = null;
 		} else {
-			tsess = conn.createSession(true, Session.AUTO_ACKNOWLEDGE);
+			tsess = createSession(conn, true, Session.AUTO_ACKNOWLEDGE);
 		}
 		conn.start();
 	}
 
+	protected ConnectionFactory createConnectionFactory(final String url, final Protocol protocol) throws Exception {
+		switch (protocol) {
+		case AMQP:
+			return createAMQPCF(url);
+		case ArtemisCore:
+			return ActiveMQJMSClient.createConnectionFactory(url, "");
+		case OpenWire:
+		default:
+			return new ActiveMQConnectionFactory(url);
+		}
+	}
+
+	/**
+	 * Creates an additional connection with the same factory and credentials as the main connection.
+	 * ClientID is not set, since it has to be unique per connection.
+	 */
+	protected Connection createConnection() throws JMSException {
+		return createConnection(null);
+	}
+
+	protected Connection createConnection(final String clientid) throws JMSException {
+		final Connection connection;
+		if (user != null && password != null) {
+			connection = cf.createConnection(user, password);
+		} else {
+			connection = cf.createConnection();
+		}
+		if(clientid != null) { // Has to be set before anything else is done with the connection
+			connection.setClientID(clientid);
+		}
+		if (isAsyncSend()) {
+			connection.setExceptionListener(this::onConnectionException);
+		}
+		return connection;
+	}
+
+	protected Session createSession(final Connection connection, final boolean transacted, final int ackMode)
+			throws JMSException {
+		final Session session = connection.createSession(transacted, ackMode);
+		if (isAsyncSend() && session instanceof org.apache.activemq.artemis.jms.client.ActiveMQSession) {
+			// Artemis reports failed non blocking sends to the session, given a confirmation window.
+			((org.apache.activemq.artemis.jms.client.ActiveMQSession) session).getCoreSession()
+					.setSendAcknowledgementHandler(new SendAcknowledgementHandler() {
+						@Override
+						public void sendAcknowledged(org.apache.activemq.artemis.api.core.Message message) {
+							asyncSendConfirmations.incrementAndGet();
+						}
+
+						@Override
+						public void sendFailed(org.apache.activemq.artemis.api.core.Message message, Exception e) {
+							onAsyncSendError(e);
+						}
+					});
+		}
+		return session;
+	}
+
+	protected boolean isAsyncSend() {
+		return cmdLine != null && cmdLine.hasOption(CMD_ASYNC_SEND);
+	}
+
+	/**
+	 * Counts a send that the broker confirms asynchronously. Call after each send.
+	 */
+	protected void countSend(final MessageProducer mp) {
+		if (mp instanceof org.apache.activemq.artemis.jms.client.ActiveMQMessageProducer && isAsyncSend()) {
+			asyncSends.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Artemis confirms non blocking sends asynchronously and fails unconfirmed sends when the connection closes.
+	 * Waits until the sends counted so far are confirmed or failed, at most --send-timeout ms, so that the connection
+	 * can be closed safely.
+	 */
+	protected void awaitAsyncSendConfirmations() {
+		if (!isAsyncSend()) {
+			return;
+		}
+		final long sends = asyncSends.get();
+		final long timeout = Long.parseLong(cmdLine.getOptionValue(CMD_SEND_TIMEOUT, DEFAULT_SEND_TIMEOUT));
+		final long deadline = System.currentTimeMillis() + timeout;
+		long completed;
+		while ((completed = asyncSendConfirmations.get() + asyncSendErrors.get()) < sends) {
+			if (timeout > 0 && System.currentTimeMillis() >= deadline) {
+				output(sends - completed, " asynchronous sends not confirmed within ", timeout, " ms");
+				return;
+			}
+			try {
+				Thread.sleep(ASYNC_SEND_POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	protected void onAsyncSendError(final Exception e) {
+		asyncSendErrors.incrementAndGet();
+		output("Asynchronous send error: ", e.getMessage());
+	}
+
+	/**
+	 * ActiveMQ 5 reports failed asynchronous sends as errors from the broker to the connection. Transport failures
+	 * are reported there too, with an IOException as cause, and are not counted as send errors.
+	 */
+	protected void onConnectionException(final JMSException e) {
+		if (cf instanceof ActiveMQConnectionFactory && !(e.getCause() instanceof IOException)
+				&& !(e.getLinkedException() instanceof IOException)) {
+			onAsyncSendError(e);
+		} else {
+			output("Connection error: ", e.getMessage());
+		}
+	}
+
+	/**
+	 * Applies provider specific settings from the command line to the connection factory.
+	 */
+	protected void configureConnectionFactory(final ConnectionFactory cf) {
+		if (ACK_MODE_DUPS_OK.equals(cmdLine.getOptionValue(CMD_ACK_MODE)) && cf instanceof ActiveMQConnectionFactory) {
+			// Acknowledges prefetched messages in batches, also on the auto acknowledge session
+			((ActiveMQConnectionFactory) cf).setOptimizeAcknowledge(true);
+		}
+		if (cmdLine.hasOption(CMD_PREFETCH)) {
+			final int prefetch = Integer.parseInt(cmdLine.getOptionValue(CMD_PREFETCH));
+			if (cf instanceof ActiveMQConnectionFactory) {
+				((ActiveMQConnectionFactory) cf).getPrefetchPolicy().setAll(prefetch);
+			} else if (cf instanceof ConnectionFactoryImpl) {
+				// Link credit
+				((ConnectionFactoryImpl) cf).setMaxPrefetch(prefetch);
+			} else {
+				// Artemis limits consumer credit in bytes, not in messages. See --consumer-window
+				output("Prefetch is not supported for ", cf.getClass().getName());
+			}
+		} else if (Integer.parseInt(cmdLine.getOptionValue(CMD_CONSUMERS, "1")) > 1) {
+			// A large prefetch lets the first competing consumer take the whole backlog
+			final int prefetch = Integer.parseInt(DEFAULT_COMPETING_PREFETCH);
+			if (cf instanceof ActiveMQConnectionFactory) {
+				((ActiveMQConnectionFactory) cf).getPrefetchPolicy().setAll(prefetch);
+			} else if (cf instanceof ConnectionFactoryImpl) {
+				((ConnectionFactoryImpl) cf).setMaxPrefetch(prefetch);
+			} else if (cf instanceof org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory
+					&& !cmdLine.hasOption(CMD_CONSUMER_WINDOW)) {
+				((org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory) cf).setConsumerWindowSize(
+						Integer.parseInt(DEFAULT_COMPETING_CONSUMER_WINDOW));
+			}
+		}
+		if (cmdLine.hasOption(CMD_CONSUMER_WINDOW)) {
+			final int window = Integer.parseInt(cmdLine.getOptionValue(CMD_CONSUMER_WINDOW));
+			if (cf instanceof org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory) {
+				((org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory) cf).setConsumerWindowSize(window);
+			} else {
+				output("Consumer window is not supported for ", cf.getClass().getName(), ". Use --", CMD_PREFETCH);
+			}
+		}
+		if (isAsyncSend()) {
+			final int window = Integer.parseInt(cmdLine.getOptionValue(CMD_SEND_WINDOW, DEFAULT_SEND_WINDOW));
+			if (cf instanceof ActiveMQConnectionFactory) {
+				ActiveMQConnectionFactory amqcf = (ActiveMQConnectionFactory) cf;
+				amqcf.setUseAsyncSend(true);
+				amqcf.setProducerWindowSize(window);
+			} else if (cf instanceof org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory) {
+				org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory artemiscf =
+						(org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory) cf;
+				artemiscf.setBlockOnDurableSend(false);
+				artemiscf.setBlockOnNonDurableSend(false);
+				artemiscf.setConfirmationWindowSize(window);
+			} else {
+				// The AMQP client does not report failed unsynchronized publishes
+				output("Asynchronous send is not supported for ", cf.getClass().getName(), ". Sending synchronously");
+			}
+		}
+	}
+
 	protected ConnectionFactory createAMQPCF(String uri) {
 		try {
             return ConnectionFactoryImpl.createFromURL(uri);
@@ -400,41 +1490,508 @@ public class A {
 
 	protected void executeGet(final CommandLine cmdLine) throws JMSException,
 			IOException, ScriptException {
-		MessageConsumer mq = null;
+		int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT,
+				DEFAULT_COUNT_GET));
+		long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT,
+				DEFAULT_WAIT));
+		int consumers = Integer.parseInt(cmdLine.getOptionValue(CMD_CONSUMERS, "1"));
+		if (consumers > 1) {
+			executeGetConcurrently(cmdLine, consumers, count, wait);
+			return;
+		}
+		if (cmdLine.hasOption(CMD_LISTENER)) {
+			executeListenerGet(cmdLine, count, wait);
+			return;
+		}
+		Session ackSession = createAcknowledgeSession(cmdLine);
+		Session getSession = ackSession != null ? ackSession : sess;
+		try {
+			MessageConsumer mq = createGetConsumer(getSession, cmdLine);
+			Acknowledger acknowledger = createAcknowledger(getSession, cmdLine);
+			EndToEndLatency latency = createEndToEndLatency(cmdLine);
+			outputAcknowledgeMode(cmdLine);
+			int i = 0;
+			while (i < count || count == 0) {
+				Message msg = receive(mq, wait, acknowledger);
+				if (msg == null) {
+					output("No message received");
+					break;
+				} else if (latency != null) {
+					recordLatency(latency, msg);
+					acknowledger.add(msg);
+					++i;
+				} else {
+					Message received = msg;
+					if( cmdLine.hasOption(CMD_TRANSFORM_SCRIPT) ) {
+						msg = transformMessage(msg,cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
+					}
+
+					outputMessage(msg, cmdLine.hasOption(CMD_JMS_HEADERS));
+					acknowledger.add(received);
+					++i;
+				}
+			}
+			acknowledger.acknowledge();
+			outputAcknowledgements(acknowledger);
+			outputEndToEndLatency(latency);
+		} finally {
+			if (ackSession != null) {
+				ackSession.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the end to end latency to record, or null if --latency is not given.
+	 */
+	protected EndToEndLatency createEndToEndLatency(final CommandLine cmdLine) {
+		if (!cmdLine.hasOption(CMD_LATENCY)) {
+			return null;
+		}
+		output("Measuring end to end latency. Messages are not printed. The producer clock is compared to this clock, "
+				+ "so between hosts the latency includes the clock offset");
+		return new EndToEndLatency(Long.parseLong(cmdLine.getOptionValue(CMD_REPORT_INTERVAL, DEFAULT_REPORT_INTERVAL)));
+	}
+
+	protected void recordLatency(final EndToEndLatency latency, final Message msg) throws JMSException {
+		latency.record(msg);
+		if (latency.isReportDue()) {
+			outputLatency("Interval end to end latency", latency.getInterval());
+			latency.resetInterval();
+		}
+	}
+
+	protected void outputEndToEndLatency(final EndToEndLatency latency) {
+		if (latency == null) {
+			return;
+		}
+		if (latency.getTotal().getCount() > 0) {
+			outputLatency("End to end latency", latency.getTotal());
+		}
+		if (latency.getSkewed() > 0) {
+			output("Clock skew: ", latency.getSkewed(), " msgs were received before they were sent and are counted as 0us. "
+					+ "The producer clock is ahead of this clock");
+		}
+		if (latency.getUntimed() > 0) {
+			output(latency.getUntimed(), " msgs had no send time or JMSTimestamp and are not counted");
+		}
+	}
+
+	/**
+	 * @return a non transacted session with the --ack-mode, or null if none is given.
+	 */
+	protected Session createAcknowledgeSession(final CommandLine cmdLine) throws JMSException {
+		return cmdLine.hasOption(CMD_ACK_MODE) ? createSession(conn, false, getAcknowledgeMode(cmdLine)) : null;
+	}
+
+	protected int getAcknowledgeMode(final CommandLine cmdLine) {
+		final String mode = cmdLine.getOptionValue(CMD_ACK_MODE, ACK_MODE_AUTO);
+		switch (mode) {
+		case ACK_MODE_AUTO:
+			return Session.AUTO_ACKNOWLEDGE;
+		case ACK_MODE_CLIENT:
+			return Session.CLIENT_ACKNOWLEDGE;
+		case ACK_MODE_DUPS_OK:
+			return Session.DUPS_OK_ACKNOWLEDGE;
+		default:
+			throw new IllegalArgumentException(CMD_ACK_MODE + ": " + mode);
+		}
+	}
+
+	/**
+	 * Receives like receive(wait), but with --ack-interval it wakes up in time to acknowledge pending messages
+	 * while no more arrive.
+	 */
+	protected Message receive(final MessageConsumer mq, final long wait, final Acknowledger acknowledger)
+			throws JMSException {
+		if (!acknowledger.hasInterval()) {
+			return mq.receive(wait);
+		}
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+		while (true) {
+			long timeout = acknowledger.getMillisUntilDue();
+			if (wait > 0) {
+				timeout = Math.min(timeout, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+			}
+			// 0 would wait forever
+			final Message msg = mq.receive(Math.max(1, timeout));
+			if (msg != null) {
+				return msg;
+			}
+			acknowledger.acknowledgeIfDue();
+			if (wait > 0 && System.nanoTime() >= deadline) {
+				return null;
+			}
+		}
+	}
+
+	protected Acknowledger createAcknowledger(final Session session, final CommandLine cmdLine) throws JMSException {
+		return new Acknowledger(session,
+				Integer.parseInt(cmdLine.getOptionValue(CMD_ACK_BATCH, DEFAULT_ACK_BATCH)),
+				Long.parseLong(cmdLine.getOptionValue(CMD_ACK_INTERVAL, "0")));
+	}
+
+	/**
+	 * Tells what happens to consumed messages if A stops before they are acknowledged.
+	 */
+	protected void outputAcknowledgeMode(final CommandLine cmdLine) {
+		final int mode = getAcknowledgeMode(cmdLine);
+		if (mode == Session.CLIENT_ACKNOWLEDGE) {
+			final String batch = cmdLine.getOptionValue(CMD_ACK_BATCH, DEFAULT_ACK_BATCH);
+			output("Acknowledging every ", batch, " messages",
+					cmdLine.hasOption(CMD_ACK_INTERVAL) ? " or " + cmdLine.getOptionValue(CMD_ACK_INTERVAL) + "ms" : "",
+					". If A stops, up to ", batch, " printed messages are redelivered");
+		} else if (mode == Session.DUPS_OK_ACKNOWLEDGE) {
+			output("Acknowledging lazily. If A stops, messages that are already printed may be redelivered");
+		}
+	}
+
+	protected void outputAcknowledgements(final Acknowledger acknowledger) {
+		if (acknowledger.isClientAcknowledge()) {
+			output(acknowledger.getAcknowledgements(), " acknowledgements sent");
+		}
+	}
+
+	protected MessageConsumer createGetConsumer(final Session session, final CommandLine cmdLine) throws JMSException {
 		String name = cmdLine.getArgs()[0];
 		if (cmdLine.hasOption(CMD_DURABLE)) { // Durable
 			Topic dest = createTopic(name);
 			if (cmdLine.hasOption(CMD_SELECTOR)) { // Selectors
-				mq = sess.createDurableSubscriber(dest, cmdLine.getOptionValue(CMD_DURABLE), cmdLine.getOptionValue(CMD_SELECTOR), true);
+				return session.createDurableSubscriber(dest, cmdLine.getOptionValue(CMD_DURABLE), cmdLine.getOptionValue(CMD_SELECTOR), true);
 			} else {
-				mq = sess.createDurableSubscriber(dest, cmdLine.getOptionValue(CMD_DURABLE));
+				return session.createDurableSubscriber(dest, cmdLine.getOptionValue(CMD_DURABLE));
 			}
 		} else {
-			Destination dest = createDestination(name);
+			Destination dest = createDestination(session, name);
 			if (cmdLine.hasOption(CMD_SELECTOR)) { // Selectors
-				mq = sess.createConsumer(dest, cmdLine.getOptionValue(CMD_SELECTOR));
+				return session.createConsumer(dest, cmdLine.getOptionValue(CMD_SELECTOR));
 			} else {
-				mq = sess.createConsumer(dest);
+				return session.createConsumer(dest);
 			}
 		}
-		int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT,
-				DEFAULT_COUNT_GET));
-		long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT,
-				DEFAULT_WAIT));
-		int i = 0;
-		while (i < count || count == 0) {
-			Message msg = mq.receive(wait);
-			if (msg == null) {
-				output("No message received");
-				break;
-			} else {
-				if( cmdLine.hasOption(CMD_TRANSFORM_SCRIPT) ) {
-					msg = transformMessage(msg,cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
+	}
+
+	/**
+	 * Gets messages with competing consumers, each with its own session. Messages are printed one at a time,
+	 * in the order they are received. No more than count messages are received in total.
+	 */
+	protected void executeGetConcurrently(final CommandLine cmdLine, final int consumers, final int count,
+			final long wait) throws JMSException {
+		if (cmdLine.hasOption(CMD_DURABLE)) {
+			output("Option --" + CMD_CONSUMERS + " cannot be used with a durable subscription");
+			return;
+		}
+		if (cmdLine.hasOption(CMD_LATENCY)) {
+			output("Option --" + CMD_CONSUMERS + " cannot be used with --" + CMD_LATENCY);
+			return;
+		}
+		if (cmdLine.hasOption(CMD_LISTENER)) {
+			output("Option --" + CMD_CONSUMERS + " cannot be used with --" + CMD_LISTENER);
+			return;
+		}
+		final AtomicLong claims = new AtomicLong();
+		outputAcknowledgeMode(cmdLine);
+		outputWorkerStats(runConsumers(consumers,
+				(name, workerTransformer) -> runGetConsumer(name, workerTransformer, count, wait, claims, cmdLine)),
+				"received");
+	}
+
+	protected WorkerStats runGetConsumer(final String name, final MessageDumpTransformer workerTransformer,
+			final int count, final long wait, final AtomicLong claims, final CommandLine cmdLine)
+			throws JMSException, IOException, ScriptException {
+		final Session session = createSession(conn, false, getAcknowledgeMode(cmdLine));
+		try {
+			final MessageConsumer mq = createGetConsumer(session, cmdLine);
+			final Acknowledger acknowledger = createAcknowledger(session, cmdLine);
+			final WorkerStats stats = new WorkerStats(name);
+			while (claim(claims, count)) {
+				final Message received = receive(mq, wait, acknowledger);
+				if (received == null) {
+					release(claims, count);
+					break;
+				}
+				Message msg = received;
+				if (cmdLine.hasOption(CMD_TRANSFORM_SCRIPT)) {
+					msg = transformMessage(workerTransformer, session, msg, cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
+				}
+				synchronized (outputLock) {
+					outputMessage(msg, cmdLine.hasOption(CMD_JMS_HEADERS));
+				}
+				acknowledger.add(received);
+				stats.increment();
+			}
+			acknowledger.acknowledge();
+			stats.stop();
+			return stats;
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Gets messages delivered to a MessageListener, which only hands them over to this thread.
+	 * Each message is acknowledged only once it is printed or written. If the get stops early, messages still
+	 * handed over are recovered, so they are redelivered.
+	 * OpenWire and Artemis acknowledge each message on its own, by this thread, so the consumer never waits for
+	 * output. Other providers acknowledge all messages delivered to the session at once, which would include those
+	 * handed over but not yet written. Their listener therefore waits until each message is written, and then
+	 * acknowledges it.
+	 * With a count, messages delivered beyond it are not acknowledged and are redelivered to the next consumer.
+	 */
+	protected void executeListenerGet(final CommandLine cmdLine, final int count, final long wait)
+			throws JMSException, IOException, ScriptException {
+		final int ackMode = getIndividualAcknowledgeMode();
+		final boolean individualAck = ackMode != Session.CLIENT_ACKNOWLEDGE;
+		final Session listenerSession = createSession(conn, false, ackMode);
+		final BlockingQueue<Message> handoff = new ArrayBlockingQueue<>(HANDOFF_QUEUE_SIZE);
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final Semaphore written = new Semaphore(0);
+		final EndToEndLatency latency = createEndToEndLatency(cmdLine);
+		final MessageConsumer mq = createGetConsumer(listenerSession, cmdLine);
+		mq.setMessageListener(new MessageListener() {
+			private int delivered;
+
+			@Override
+			public void onMessage(final Message msg) {
+				if (count > 0 && delivered >= count) {
+					return;
+				}
+				try {
+					delivered++;
+					while (!handoff.offer(msg, 100, TimeUnit.MILLISECONDS)) {
+						if (stopped.get()) {
+							return;
+						}
+					}
+					if (!individualAck) {
+						while (!written.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+							if (stopped.get()) {
+								return;
+							}
+						}
+						msg.acknowledge();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (JMSException e) {
+					logger.warn("Failed to acknowledge message", e);
+				}
+			}
+		});
+		boolean completed = false;
+		try {
+			int i = 0;
+			while (i < count || count == 0) {
+				final Message received = wait > 0 ? handoff.poll(wait, TimeUnit.MILLISECONDS) : handoff.take();
+				if (received == null) {
+					output("No message received");
+					break;
+				}
+				if (latency != null) {
+					recordLatency(latency, received);
+				} else {
+					Message msg = received;
+					if (cmdLine.hasOption(CMD_TRANSFORM_SCRIPT)) {
+						msg = transformMessage(msg, cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
+					}
+					outputMessage(msg, cmdLine.hasOption(CMD_JMS_HEADERS));
+				}
+				if (individualAck) {
+					received.acknowledge();
+				} else {
+					written.release();
 				}
-				
-				outputMessage(msg, cmdLine.hasOption(CMD_JMS_HEADERS));
 				++i;
 			}
+			completed = true;
+			outputEndToEndLatency(latency);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			output("Interrupted");
+		} finally {
+			stopped.set(true);
+			try {
+				mq.close();
+				if (!completed && !handoff.isEmpty()) {
+					output(handoff.size(), " messages received but not printed are recovered");
+					listenerSession.recover();
+				}
+			} finally {
+				listenerSession.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the provider acknowledge mode that acknowledges a single message, or CLIENT_ACKNOWLEDGE if the
+	 *         provider has none
+	 */
+	protected int getIndividualAcknowledgeMode() {
+		if (conn instanceof org.apache.activemq.ActiveMQConnection) {
+			return org.apache.activemq.ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE;
+		} else if (conn instanceof org.apache.activemq.artemis.jms.client.ActiveMQConnection) {
+			return org.apache.activemq.artemis.api.jms.ActiveMQJMSConstants.INDIVIDUAL_ACKNOWLEDGE;
+		}
+		return Session.CLIENT_ACKNOWLEDGE;
+	}
+
+	/**
+	 * Sends requests and waits for each reply on a temporary queue, to measure the round trip time.
+	 * Each requester has its own connection and sends one request at a time. Requests are claimed from count.
+	 */
+	protected void executePing(final CommandLine cmdLine) throws JMSException {
+		final int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, "1"));
+		final int requesters = Integer.parseInt(cmdLine.getOptionValue(CMD_PRODUCERS, "1"));
+		final long timeout = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT, DEFAULT_REPLY_TIMEOUT));
+		final AtomicLong claims = new AtomicLong();
+		final AtomicLong timeouts = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(requesters);
+		try {
+			List<Future<WorkerStats>> results = new ArrayList<>(requesters);
+			for (int w = 0; w < requesters; w++) {
+				final String name = "Requester " + (w + 1);
+				results.add(executor.submit(() -> runRequester(name, count, timeout, claims, timeouts, cmdLine)));
+			}
+			outputWorkerStats(awaitWorkers(results), "answered", "Round trip time");
+		} finally {
+			executor.shutdownNow();
+		}
+		if (timeouts.get() > 0) {
+			output(timeouts.get(), " requests timed out after ", timeout, "ms");
+		}
+	}
+
+	protected WorkerStats runRequester(final String name, final int count, final long timeout,
+			final AtomicLong claims, final AtomicLong timeouts, final CommandLine cmdLine)
+			throws JMSException, IOException {
+		Connection workerConn = createConnection();
+		try {
+			workerConn.start();
+			Session session = createSession(workerConn, false, Session.AUTO_ACKNOWLEDGE);
+			MessageProducer mp = session.createProducer(createDestination(session, cmdLine.getArgs()[0]));
+			Queue replyQueue = session.createTemporaryQueue();
+			MessageConsumer replies = session.createConsumer(replyQueue);
+			Message request = createPutMessage(session, mp, cmdLine.getOptionValue(CMD_PING), cmdLine);
+			request.setJMSReplyTo(replyQueue);
+
+			final WorkerStats stats = new WorkerStats(name);
+			stats.setLatency(new LatencyHistogram());
+			final LatencyHistogram interval = new LatencyHistogram();
+			final long reportIntervalNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(
+					cmdLine.getOptionValue(CMD_REPORT_INTERVAL, DEFAULT_REPORT_INTERVAL)));
+			long nextReport = System.nanoTime() + reportIntervalNanos;
+			for (long seq = 1; claim(claims, count); seq++) {
+				final String correlationId = name + "-" + seq;
+				nextPayload(request);
+				request.setJMSCorrelationID(correlationId);
+				final long start = System.nanoTime();
+				mp.send(request);
+				countSend(mp);
+				if (!awaitReply(replies, correlationId, start + TimeUnit.MILLISECONDS.toNanos(timeout))) {
+					timeouts.incrementAndGet();
+					continue;
+				}
+				final long now = System.nanoTime();
+				final long rttMicros = TimeUnit.NANOSECONDS.toMicros(now - start);
+				stats.getLatency().record(rttMicros);
+				interval.record(rttMicros);
+				stats.increment();
+				if (reportIntervalNanos > 0 && now >= nextReport) {
+					outputLatency(name + " interval", interval);
+					interval.reset();
+					nextReport = now + reportIntervalNanos;
+				}
+			}
+			stats.stop();
+			return stats;
+		} finally {
+			workerConn.close();
+		}
+	}
+
+	/**
+	 * Waits for the reply to a request. Late replies to earlier requests, which have timed out, are skipped.
+	 * @return true if the reply arrived before the deadline
+	 */
+	protected boolean awaitReply(final MessageConsumer replies, final String correlationId, final long deadlineNanos)
+			throws JMSException {
+		while (true) {
+			final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+			if (remainingMillis <= 0) {
+				return false;
+			}
+			Message reply = replies.receive(remainingMillis);
+			if (reply == null) {
+				return false;
+			} else if (correlationId.equals(reply.getJMSCorrelationID())) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Echoes each message to its JMSReplyTo, with the correlation ID of the request, or else its message ID.
+	 * Runs until count messages are answered. Without -w, it waits for requests until stopped.
+	 */
+	protected void executeRespond(final CommandLine cmdLine) throws JMSException {
+		final int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL));
+		final long wait = Long.parseLong(cmdLine.getOptionValue(CMD_WAIT, "0"));
+		final int consumers = Integer.parseInt(cmdLine.getOptionValue(CMD_CONSUMERS, "1"));
+		final AtomicLong claims = new AtomicLong();
+		final AtomicLong unanswered = new AtomicLong();
+		output("Responding to requests on ", cmdLine.getArgs()[0]);
+		outputWorkerStats(runConsumers(consumers,
+				(name, workerTransformer) -> runResponder(name, workerTransformer, count, wait, claims, unanswered,
+						cmdLine)), "answered");
+		if (unanswered.get() > 0) {
+			output(unanswered.get(), " msgs without a reply-to or with a deleted reply-to were not answered");
+		}
+	}
+
+	protected WorkerStats runResponder(final String name, final MessageDumpTransformer workerTransformer,
+			final int count, final long wait, final AtomicLong claims, final AtomicLong unanswered,
+			final CommandLine cmdLine) throws JMSException, IOException, ScriptException {
+		final Session session = createSession(conn, false, Session.AUTO_ACKNOWLEDGE);
+		try {
+			final MessageConsumer mq = createGetConsumer(session, cmdLine);
+			final MessageProducer mp = session.createProducer(null);
+			final WorkerStats stats = new WorkerStats(name);
+			while (claim(claims, count)) {
+				final Message request = mq.receive(wait);
+				if (request == null) {
+					release(claims, count);
+					break;
+				}
+				final Destination replyTo = request.getJMSReplyTo();
+				if (replyTo == null) {
+					// -c counts replies, so an unanswered request gives its claim back
+					unanswered.incrementAndGet();
+					release(claims, count);
+					continue;
+				}
+				Message reply = request;
+				if (cmdLine.hasOption(CMD_TRANSFORM_SCRIPT)) {
+					reply = transformMessage(workerTransformer, session, request,
+							cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
+				}
+				reply.setJMSCorrelationID(request.getJMSCorrelationID() != null
+						? request.getJMSCorrelationID() : request.getJMSMessageID());
+				reply.setJMSReplyTo(null);
+				try {
+					mp.send(replyTo, reply, request.getJMSDeliveryMode(), request.getJMSPriority(), 0);
+					countSend(mp);
+				} catch (InvalidDestinationException e) {
+					// The requester is gone, along with its temporary queue
+					unanswered.incrementAndGet();
+					release(claims, count);
+					continue;
+				}
+				stats.increment();
+			}
+			stats.stop();
+			return stats;
+		} finally {
+			session.close();
 		}
 	}
 
@@ -533,46 +2090,69 @@ public class A {
 		List<Message> messages = dumpReader.toMessages(dumpMessages);
 		Destination destination = createDestination(cmdLine.getArgs()[0]);
 		MessageProducer mp = tsess != null ? tsess.createProducer(destination) : sess.createProducer(destination);
+		// All or nothing, unless a batch size is given.
+		CommitBatcher batcher = createCommitBatcher(cmdLine, tsess, 0);
 		
-		for (Message message : messages) {
-			mp.send(message, message.getJMSDeliveryMode(), message.getJMSPriority(), message.getJMSExpiration() );
-		}
-		
-		if (tsess != null){
-			tsess.commit();
+		try {
+			for (Message message : messages) {
+				mp.send(message, message.getJMSDeliveryMode(), message.getJMSPriority(), message.getJMSExpiration() );
+				countSend(mp);
+				batcher.add(message);
+			}
+			batcher.commit();
+		} catch (JMSException | RuntimeException e) {
+			batcher.rollback();
+			output("Restore failed after ", batcher.getBatches(), " committed transactions. Reason: ", e.getMessage());
+			throw e;
 		}
 		
 		mp.close();
 		output(messages.size() + " messages restored to " + cmdLine.getArgs()[0]);
+		outputCommits(batcher);
 	}
 
 	protected void executeWriteDump(CommandLine cmdLine) throws JMSException, IOException, ScriptException {
-		
-		List<Message> msgs = consumeMessages(cmdLine);
+		Session ackSession = createAcknowledgeSession(cmdLine);
+		try {
+			writeDump(cmdLine, ackSession);
+		} finally {
+			if (ackSession != null) {
+				ackSession.close();
+			}
+		}
+	}
+
+	/**
+	 * @param ackSession session to consume with, acknowledged when the dump is written. If null, the transacted
+	 *                   session is used, or the default session if transactions are disabled.
+	 */
+	protected void writeDump(CommandLine cmdLine, Session ackSession) throws JMSException, IOException, ScriptException {
+		final Session session = ackSession != null ? ackSession : tsess != null ? tsess : sess;
+		if (ackSession != null && getAcknowledgeMode(cmdLine) == Session.CLIENT_ACKNOWLEDGE) {
+			output("Acknowledging when the dump is written. If A stops before, all messages are redelivered");
+		} else if (ackSession != null) {
+			outputAcknowledgeMode(cmdLine);
+		}
+		List<Message> msgs = consumeMessages(cmdLine, session);
 		
 		if( msgs.isEmpty()) {
 			output("No messages found - no file written");
 		} else {
 			try {
-				String filePath = cmdLine.getOptionValue(CMD_WRITE_DUMP);
-				output("Writing " + msgs.size() + " messages to dump file " + filePath);
-				MessageDumpWriter mdw = new MessageDumpWriter();
-				List<MessageDump> dumpMessages = mdw.toDumpMessages(msgs);
-				if( cmdLine.hasOption(CMD_TRANSFORM_SCRIPT)) {
-					transformer.transformMessages(dumpMessages, cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
-				}
-
-				final String jsonDump = mdw.toJson(dumpMessages);
-				FileUtils.writeStringToFile(new File(filePath), jsonDump, StandardCharsets.UTF_8);
-				output(msgs.size() + " messages written to " + filePath);
-				if (tsess != null){
-					tsess.commit();
+				writeDumpFile(cmdLine, msgs);
+				if (session.getTransacted()){
+					session.commit();
+				} else if (session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+					msgs.get(msgs.size() - 1).acknowledge();
 				}
 			} catch (Exception e){
 				output("Failed to write all messages to dump file. Reason: ", e.getMessage());
-				if (tsess != null){
+				if (session.getTransacted()){
 					output("Rolling back JMS transaction");
-					tsess.rollback();
+					session.rollback();
+				} else if (session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE) {
+					output("Recovering session. Messages will be redelivered");
+					session.recover();
 				}
 			}
 		}
@@ -589,6 +2169,24 @@ public class A {
 		}
 	}
 
+	/**
+	 * Writes messages to the dump file of -x, transformed by -S if given.
+	 */
+	protected void writeDumpFile(final CommandLine cmdLine, final List<Message> msgs)
+			throws JMSException, IOException, ScriptException {
+		String filePath = cmdLine.getOptionValue(CMD_WRITE_DUMP);
+		output("Writing " + msgs.size() + " messages to dump file " + filePath);
+		MessageDumpWriter mdw = new MessageDumpWriter();
+		List<MessageDump> dumpMessages = mdw.toDumpMessages(msgs);
+		if( cmdLine.hasOption(CMD_TRANSFORM_SCRIPT)) {
+			transformer.transformMessages(dumpMessages, cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT));
+		}
+
+		final String jsonDump = mdw.toJson(dumpMessages);
+		FileUtils.writeStringToFile(new File(filePath), jsonDump, StandardCharsets.UTF_8);
+		output(msgs.size() + " messages written to " + filePath);
+	}
+
 	protected void executeShowVersion() {
 		output(logoString());
 		String version = getClass().getPackage().getImplementationVersion();
@@ -598,9 +2196,12 @@ public class A {
 	}
 
 	protected List<Message> consumeMessages(CommandLine cmdLine) throws JMSException {
-		Destination dest = createDestination(cmdLine.getArgs()[0]);
+		return consumeMessages(cmdLine, tsess != null ? tsess : sess);
+	}
+
+	protected List<Message> consumeMessages(CommandLine cmdLine, final Session session) throws JMSException {
+		Destination dest = createDestination(session, cmdLine.getArgs()[0]);
 		MessageConsumer mq = null;
-		final Session session = tsess != null ? tsess : sess;
 		if (cmdLine.hasOption(CMD_SELECTOR)) { // Selectors
 			mq = session.createConsumer(dest, cmdLine.getOptionValue(CMD_SELECTOR));
 		} else {
@@ -622,11 +2223,93 @@ public class A {
 				++i;
 			}
 		}
-		return msgs;
+		return msgs;
+	}
+
+	protected void putData(final String data, final CommandLine cmdLine) throws IOException,
+			JMSException, ScriptException {
+		if (cmdLine.hasOption(CMD_STREAM) && (cmdLine.hasOption(CMD_COUNT) || cmdLine.hasOption(CMD_BATCH_FILE))) {
+			output("Option --" + CMD_STREAM + " sends a single message and cannot be used with -" + CMD_COUNT
+					+ " or -" + CMD_BATCH_FILE);
+			return;
+		}
+		Session putSession = isCommitBatching(cmdLine) && tsess != null ? tsess : sess;
+		payloadGenerator = null;
+		MessageProducer mp = putSession.createProducer(createDestination(cmdLine
+				.getArgs()[0]));
+		Message outMsg = createPutMessage(putSession, mp, data, cmdLine);
+		CommitBatcher batcher = createCommitBatcher(cmdLine, putSession, 0);
+
+		boolean useScript = cmdLine.hasOption(CMD_TRANSFORM_SCRIPT);
+		final String script = cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT);
+		
+		// send multiple messages?
+		if (cmdLine.hasOption("c")) {
+			int count = Integer.parseInt(cmdLine.getOptionValue("c"));
+			int producers = Integer.parseInt(cmdLine.getOptionValue(CMD_PRODUCERS, "1"));
+			if (producers > 1) {
+				if (useScript) {
+					output("Option --" + CMD_PRODUCERS + " cannot be used with a transform script");
+					return;
+				}
+				outputWorkerStats(putDataConcurrently(data, count, producers, cmdLine), "sent");
+			} else {
+				WorkerStats stats = sendMessages("Producer", mp, outMsg, count, batcher, cmdLine);
+				if (stats.getLatency() != null) {
+					outputLatency("Send latency", stats.getLatency());
+				}
+				outputCommits(batcher);
+			}
+			output("", count, " messages sent");
+		} else if (cmdLine.hasOption(CMD_BATCH_FILE)) {
+			if (!useScript) {
+				output("Batch put must be used with script");
+			} else if (Integer.parseInt(cmdLine.getOptionValue(CMD_PRODUCERS, "1")) > 1) {
+				putBatchConcurrently(script, cmdLine.getOptionValue(CMD_BATCH_FILE), data,
+						Integer.parseInt(cmdLine.getOptionValue(CMD_PRODUCERS)), cmdLine);
+			} else {
+				putBatchMessage(script, cmdLine.getOptionValue(CMD_BATCH_FILE), outMsg, mp, batcher);
+			}
+		} else {
+			nextPayload(outMsg);
+			final Message finalMsg = useScript ? transformMessage(outMsg, script) : outMsg;
+			stampSendTime(finalMsg);
+			mp.send(finalMsg);
+			countSend(mp);
+			batcher.add(finalMsg);
+			batcher.commit();
+		}
 	}
 
-	protected void putData(final String data, final CommandLine cmdLine) throws IOException,
-			JMSException, ScriptException {
+	protected boolean isCommitBatching(final CommandLine cmdLine) {
+		return cmdLine.hasOption(CMD_COMMIT_BATCH) || cmdLine.hasOption(CMD_COMMIT_BYTES);
+	}
+
+	/**
+	 * @param session the session to commit. Nothing is committed if it is null or not transacted.
+	 * @param defaultBatchSize messages per transaction if no batch size is given. 0 means a single transaction
+	 */
+	protected CommitBatcher createCommitBatcher(final CommandLine cmdLine, final Session session,
+			final int defaultBatchSize) throws JMSException {
+		// A byte budget alone replaces the default message count
+		final int batchSize = cmdLine.hasOption(CMD_COMMIT_BYTES) && !cmdLine.hasOption(CMD_COMMIT_BATCH) ? 0
+				: Integer.parseInt(cmdLine.getOptionValue(CMD_COMMIT_BATCH, Integer.toString(defaultBatchSize)));
+		return new CommitBatcher(session, batchSize,
+				Long.parseLong(cmdLine.getOptionValue(CMD_COMMIT_BYTES, "0")));
+	}
+
+	protected void outputCommits(final CommitBatcher batcher) {
+		if (batcher.isTransacted()) {
+			output(batcher.getBatches(), " transactions committed");
+		}
+	}
+
+	/**
+	 * Creates the message to put, including properties and JMS headers given on the command line.
+	 * The message is created by the given session, so that each producer can create its own copy.
+	 */
+	protected Message createPutMessage(final Session session, final MessageProducer mp, final String data,
+			final CommandLine cmdLine) throws IOException, JMSException {
 		// Check if we have properties to put
 		Properties props = cmdLine.getOptionProperties(CMD_SET_HEADER);
 		Properties intProps = cmdLine.getOptionProperties(CMD_SET_INT_HEADER);
@@ -639,14 +2322,14 @@ public class A {
 
 		Message outMsg = null;
 		// figure out input data
-		if (data.startsWith("@")) {
-			outMsg = createMessageFromFile(data, type, encoding);
+		if (data.startsWith("@") && cmdLine.hasOption(CMD_STREAM)) {
+			outMsg = createStreamMessage(session, new File(data.substring(1)));
+		} else if (data.startsWith("@")) {
+			outMsg = createMessageFromFile(session, data, type, encoding);
 		} else {
-			outMsg = createMessageFromInput(data, type, encoding);
+			outMsg = createMessageFromInput(session, data, type, encoding);
 		}
 
-		MessageProducer mp = sess.createProducer(createDestination(cmdLine
-				.getArgs()[0]));
 		if (cmdLine.hasOption("n")) {
 			mp.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
 		}
@@ -669,27 +2352,164 @@ public class A {
 		}
 
 		populateJmsProperties(outMsg, mp);
+		return outMsg;
+	}
 
-		boolean useScript = cmdLine.hasOption(CMD_TRANSFORM_SCRIPT);
-		final String script = cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT);
-		
-		// send multiple messages?
-		if (cmdLine.hasOption("c")) {
-			int count = Integer.parseInt(cmdLine.getOptionValue("c"));
-			for (int i = 0; i < count; i++) {
-				final Message finalMsg = useScript ? transformMessage(outMsg, script) : outMsg;
-				mp.send(finalMsg);
-			}
-			output("", count, " messages sent");
-		} else if (cmdLine.hasOption(CMD_BATCH_FILE)) {
-			if (!useScript) {
-				output("Batch put must be used with script");
-			} else {
-				putBatchMessage(script, cmdLine.getOptionValue(CMD_BATCH_FILE), outMsg, mp);
+	/**
+	 * Puts count messages using a number of producers, each with its own connection, session and producer.
+	 * The count is spread as evenly as possible over the producers.
+	 * @return statistics for each producer
+	 */
+	protected List<WorkerStats> putDataConcurrently(final String data, final int count, final int producers,
+			final CommandLine cmdLine) throws JMSException {
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		try {
+			List<Future<WorkerStats>> results = new ArrayList<>(producers);
+			for (int w = 0; w < producers; w++) {
+				final String name = "Producer " + (w + 1);
+				final int share = count / producers + (w < count % producers ? 1 : 0);
+				results.add(executor.submit(() -> runProducer(name, data, share, cmdLine)));
 			}
-		} else {
+			return awaitWorkers(results);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	protected WorkerStats runProducer(final String name, final String data, final int count,
+			final CommandLine cmdLine) throws JMSException, IOException, ScriptException {
+		Connection workerConn = createConnection();
+		try {
+			boolean transacted = isCommitBatching(cmdLine) && tsess != null;
+			Session workerSess = createSession(workerConn, transacted, Session.AUTO_ACKNOWLEDGE);
+			MessageProducer mp = workerSess.createProducer(createDestination(workerSess, cmdLine.getArgs()[0]));
+			Message outMsg = createPutMessage(workerSess, mp, data, cmdLine);
+			return sendMessages(name, mp, outMsg, count, createCommitBatcher(cmdLine, workerSess, 0), cmdLine);
+		} finally {
+			awaitAsyncSendConfirmations();
+			workerConn.close();
+		}
+	}
+
+	/**
+	 * Sends a message count times, optionally transformed by script and paced to a target rate.
+	 * When paced, the send latency is measured from the scheduled send time and reported at intervals.
+	 */
+	protected WorkerStats sendMessages(final String name, final MessageProducer mp, final Message outMsg,
+			final int count, final CommitBatcher batcher, final CommandLine cmdLine)
+			throws JMSException, ScriptException, IOException {
+		final boolean useScript = cmdLine.hasOption(CMD_TRANSFORM_SCRIPT);
+		final String script = cmdLine.getOptionValue(CMD_TRANSFORM_SCRIPT);
+		final int producers = Integer.parseInt(cmdLine.getOptionValue(CMD_PRODUCERS, "1"));
+		final double rate = Double.parseDouble(cmdLine.getOptionValue(CMD_RATE, "0")) / Math.max(1, producers);
+		final WorkerStats stats = new WorkerStats(name);
+
+		RatePacer pacer = null;
+		LatencyHistogram interval = null;
+		long reportIntervalNanos = 0;
+		long nextReport = 0;
+		if (rate > 0) {
+			pacer = new RatePacer(rate, TimeUnit.SECONDS.toNanos(Long.parseLong(cmdLine.getOptionValue(CMD_RAMP_UP, "0"))));
+			stats.setLatency(new LatencyHistogram());
+			interval = new LatencyHistogram();
+			reportIntervalNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(
+					cmdLine.getOptionValue(CMD_REPORT_INTERVAL, DEFAULT_REPORT_INTERVAL)));
+			nextReport = System.nanoTime() + reportIntervalNanos;
+		}
+
+		for (int i = 0; i < count; i++) {
+			final long intended = pacer != null ? pacer.awaitSendTime(i) : 0;
+			nextPayload(outMsg);
 			final Message finalMsg = useScript ? transformMessage(outMsg, script) : outMsg;
+			stampSendTime(finalMsg);
 			mp.send(finalMsg);
+			countSend(mp);
+			batcher.add(finalMsg);
+			stats.increment();
+			if (pacer != null) {
+				final long now = System.nanoTime();
+				final long latencyMicros = TimeUnit.NANOSECONDS.toMicros(now - intended);
+				stats.getLatency().record(latencyMicros);
+				interval.record(latencyMicros);
+				if (reportIntervalNanos > 0 && now >= nextReport) {
+					outputLatency(name + " interval", interval);
+					interval.reset();
+					nextReport = now + reportIntervalNanos;
+				}
+			}
+		}
+		batcher.commit();
+		stats.stop();
+		stats.setCommits(batcher.getBatches());
+		return stats;
+	}
+
+	protected void outputLatency(final String label, final LatencyHistogram histogram) {
+		output(label, ": ", histogram.summary("us"));
+	}
+
+	/**
+	 * Waits for all workers to finish. The first worker failure is rethrown.
+	 */
+	protected List<WorkerStats> awaitWorkers(final List<Future<WorkerStats>> results) throws JMSException {
+		List<WorkerStats> stats = new ArrayList<>(results.size());
+		try {
+			for (Future<WorkerStats> result : results) {
+				stats.add(result.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted while waiting for workers");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof JMSException) {
+				throw (JMSException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return stats;
+	}
+
+	protected void outputWorkerStats(final List<WorkerStats> stats, final String verb) {
+		outputWorkerStats(stats, verb, "Send latency");
+	}
+
+	protected void outputWorkerStats(final List<WorkerStats> stats, final String verb, final String latencyLabel) {
+		long total = 0;
+		long commits = 0;
+		long failed = 0;
+		long elapsedNanos = 0;
+		LatencyHistogram latency = new LatencyHistogram();
+		for (WorkerStats worker : stats) {
+			if (worker.getLatency() != null) {
+				latency.merge(worker.getLatency());
+			}
+			outputWorker(worker, verb);
+			total += worker.getCount();
+			failed += worker.getFailed();
+			commits += worker.getCommits();
+			elapsedNanos = Math.max(elapsedNanos, worker.getElapsedNanos());
+		}
+		WorkerStats totals = new WorkerStats("Total", total, elapsedNanos);
+		output("Total: ", total, " msgs ", verb, " in ", totals.getElapsedMillis(), "ms (",
+				String.format("%.1f", totals.getThroughput()), " msgs/s)");
+		if (latency.getCount() > 0) {
+			outputLatency(latencyLabel, latency);
+		}
+		if (commits > 0) {
+			output(commits, " transactions committed");
+		}
+		if (failed > 0) {
+			output(failed, " msgs failed");
+		}
+	}
+
+	protected void outputWorker(final WorkerStats worker, final String verb) {
+		final String waits = worker.getIdleMillis() > 0 || worker.getBlockedMillis() > 0
+				? ", idle " + worker.getIdleMillis() + "ms, blocked " + worker.getBlockedMillis() + "ms" : "";
+		output(worker.getName(), ": ", worker.getCount(), " msgs ", verb, " in ", worker.getElapsedMillis(),
+				"ms (", String.format("%.1f", worker.getThroughput()), " msgs/s)", waits);
+		if (worker.getError() != null) {
+			output(worker.getName(), " failed: ", worker.getError().getMessage());
 		}
 	}
 
@@ -730,36 +2550,189 @@ public class A {
 		}
 	}
 
-	private void putBatchMessage(String script, String batchFile, Message outMsg, MessageProducer mp) {
-		try {
-			String batchLines = FileUtils.readFileToString(new File(batchFile), StandardCharsets.UTF_8);
-			final String[] lines = batchLines.split("\\r?\\n");
-			for (String line : lines) {
+	/**
+	 * Sends one message per line in the batch file. The file is streamed, so memory use does not depend on its size.
+	 */
+	private void putBatchMessage(String script, String batchFile, Message outMsg, MessageProducer mp,
+			CommitBatcher batcher) {
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(batchFile), StandardCharsets.UTF_8)) {
+			final long reportIntervalNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(
+					cmdLine.getOptionValue(CMD_REPORT_INTERVAL, DEFAULT_REPORT_INTERVAL)));
+			long nextReport = System.nanoTime() + reportIntervalNanos;
+			final WorkerStats stats = new WorkerStats("Batch");
+			String line;
+			while ((line = reader.readLine()) != null) {
+				nextPayload(outMsg);
 				transformer.getContext().put("entry", line);
 				final Message finalMsg = transformMessage(outMsg, script);
 				populateJmsProperties(finalMsg, mp);
+				stampSendTime(finalMsg);
 				mp.send(finalMsg);
+				countSend(mp);
+				batcher.add(finalMsg);
+				stats.increment();
+				if (reportIntervalNanos > 0 && System.nanoTime() >= nextReport) {
+					output(stats.getCount(), " lines sent (", String.format("%.1f", stats.getThroughput()), " lines/s)");
+					nextReport = System.nanoTime() + reportIntervalNanos;
+				}
 			}
-			output(lines.length + " messages sent");
+			batcher.commit();
+			stats.stop();
+			output(stats.getCount() + " messages sent");
+			output(stats.getCount(), " lines in ", stats.getElapsedMillis(), "ms (",
+					String.format("%.1f", stats.getThroughput()), " lines/s)");
+			outputCommits(batcher);
 		} catch (Exception e) {
 			output("Error processing batch ", e.getMessage());
 		}
 	}
 
+	/**
+	 * Sends one message per line in the batch file using a number of producers, each with its own connection,
+	 * session and script context. Lines are dealt round robin to the producers, so the order of lines
+	 * is kept within each producer but not across producers. All script contexts share one script engine,
+	 * so the script is compiled once. The first producer failure is rethrown.
+	 */
+	protected void putBatchConcurrently(final String script, final String batchFile, final String data,
+			final int producers, final CommandLine cmdLine) throws JMSException, IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		Engine engine = createSharedScriptEngine();
+		try {
+			final WorkerStats readerStats = new WorkerStats("Batch");
+			List<BlockingQueue<String>> queues = new ArrayList<>(producers);
+			List<Future<WorkerStats>> results = new ArrayList<>(producers);
+			for (int w = 0; w < producers; w++) {
+				final String name = "Producer " + (w + 1);
+				final BlockingQueue<String> queue = new ArrayBlockingQueue<>(BATCH_QUEUE_SIZE);
+				final MessageDumpTransformer workerTransformer = new MessageDumpTransformer(engine);
+				queues.add(queue);
+				results.add(executor.submit(() -> runBatchProducer(name, script, data, queue, workerTransformer,
+						cmdLine)));
+			}
+			try (BufferedReader reader = Files.newBufferedReader(Paths.get(batchFile), StandardCharsets.UTF_8)) {
+				String line;
+				int next = 0;
+				while ((line = reader.readLine()) != null
+						&& handOff(queues.get(next), line, results.get(next))) {
+					readerStats.increment();
+					next = (next + 1) % producers;
+				}
+			} finally {
+				for (int w = 0; w < producers; w++) {
+					handOff(queues.get(w), END_OF_BATCH, results.get(w));
+				}
+			}
+			List<WorkerStats> stats = awaitWorkers(results);
+			readerStats.stop();
+			outputWorkerStats(stats, "sent");
+			long sent = 0;
+			for (WorkerStats worker : stats) {
+				sent += worker.getCount();
+			}
+			output(sent + " messages sent");
+			output(readerStats.getCount(), " lines in ", readerStats.getElapsedMillis(), "ms (",
+					String.format("%.1f", readerStats.getThroughput()), " lines/s)");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted while reading the batch file");
+		} finally {
+			executor.shutdownNow();
+			engine.close();
+		}
+	}
+
+	/**
+	 * Creates a script engine to be shared by the script contexts of concurrent workers. Closed by the caller.
+	 */
+	protected Engine createSharedScriptEngine() {
+		return Engine.newBuilder().option("engine.WarnInterpreterOnly", "false").build();
+	}
+
+	/**
+	 * Puts a line on a worker queue. Gives up if the worker is done, which only happens before the end of
+	 * the batch if it failed.
+	 * @return true if the line was queued
+	 */
+	private boolean handOff(final BlockingQueue<String> queue, final String line, final Future<?> worker)
+			throws InterruptedException {
+		while (!queue.offer(line, 100, TimeUnit.MILLISECONDS)) {
+			if (worker.isDone()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected WorkerStats runBatchProducer(final String name, final String script, final String data,
+			final BlockingQueue<String> lines, final MessageDumpTransformer workerTransformer,
+			final CommandLine cmdLine) throws JMSException, IOException, ScriptException, InterruptedException {
+		Connection workerConn = createConnection();
+		try {
+			boolean transacted = isCommitBatching(cmdLine) && tsess != null;
+			Session workerSess = createSession(workerConn, transacted, Session.AUTO_ACKNOWLEDGE);
+			MessageProducer mp = workerSess.createProducer(createDestination(workerSess, cmdLine.getArgs()[0]));
+			Message outMsg = createPutMessage(workerSess, mp, data, cmdLine);
+			CommitBatcher batcher = createCommitBatcher(cmdLine, workerSess, 0);
+			WorkerStats stats = new WorkerStats(name);
+			String line;
+			while ((line = lines.take()) != END_OF_BATCH) {
+				nextPayload(outMsg);
+				workerTransformer.getContext().put("entry", line);
+				final Message finalMsg = transformMessage(workerTransformer, workerSess, outMsg, script);
+				populateJmsProperties(finalMsg, mp);
+				stampSendTime(finalMsg);
+				mp.send(finalMsg);
+				countSend(mp);
+				batcher.add(finalMsg);
+				stats.increment();
+			}
+			batcher.commit();
+			stats.stop();
+			stats.setCommits(batcher.getBatches());
+			return stats;
+		} finally {
+			awaitAsyncSendConfirmations();
+			workerConn.close();
+		}
+	}
+
 	protected Message transformMessage(final Message msg, final String script) throws JMSException, ScriptException, IOException{
+		return transformMessage(transformer, sess, msg, script);
+	}
+
+	protected Message transformMessage(final MessageDumpTransformer messageTransformer, final Session session,
+			final Message msg, final String script) throws JMSException, ScriptException, IOException{
 		MessageDumpWriter mdw = new MessageDumpWriter();
-		MessageDumpReader mdr = new MessageDumpReader(sess);
-		return mdr.toJmsMessage(transformer.transformMessage(mdw.toDumpMessage(msg), script));
+		MessageDumpReader mdr = new MessageDumpReader(session);
+		return mdr.toJmsMessage(messageTransformer.transformMessage(mdw.toDumpMessage(msg), script));
 	}
 
 	protected Message createMessageFromInput(final String data, String type, String encoding)
 			throws JMSException, UnsupportedEncodingException, IOException, JsonParseException, JsonMappingException {
+		return createMessageFromInput(sess, data, type, encoding);
+	}
+
+	protected Message createMessageFromInput(final Session sess, final String data, String type, String encoding)
+			throws JMSException, UnsupportedEncodingException, IOException, JsonParseException, JsonMappingException {
 		Message outMsg = null;
-		if( type.equals(TYPE_TEXT)) {
+		if (data.startsWith(PayloadGenerator.PREFIX)) {
+			if (type.equals(TYPE_TEXT)) {
+				outMsg = sess.createTextMessage();
+			} else if (type.equals(TYPE_BYTES)) {
+				outMsg = sess.createBytesMessage();
+			} else {
+				throw new IllegalArgumentException("Generated payloads need " + CMD_TYPE + " " + TYPE_TEXT + " or "
+						+ TYPE_BYTES);
+			}
+			// The payload is set by nextPayload, for each send
+			getPayloadGenerator(data, type, encoding);
+		} else if( type.equals(TYPE_TEXT)) {
 			outMsg = sess.createTextMessage(data);
 		} else if ( type.equals(TYPE_BYTES)) {
 			BytesMessage bytesMsg = sess.createBytesMessage();
 			bytesMsg.writeBytes(data.getBytes(encoding));
+			// Read only, so that the body length can be told when committing by size
+			bytesMsg.reset();
 			outMsg = bytesMsg;
 		} else if( type.equals(TYPE_MAP)) {
 			MapMessage mapMsg = sess.createMapMessage();
@@ -775,18 +2748,53 @@ public class A {
 		return outMsg;
 	}
 
+	protected synchronized PayloadGenerator getPayloadGenerator(final String spec, final String type,
+			final String encoding) throws IOException {
+		if (payloadGenerator == null) {
+			payloadGenerator = new PayloadGenerator(spec, type.equals(TYPE_TEXT), Charset.forName(encoding));
+		}
+		return payloadGenerator;
+	}
+
+	/**
+	 * Sets the next generated payload of a message that is about to be sent, if the payload is generated.
+	 */
+	protected void nextPayload(final Message msg) throws JMSException {
+		if (payloadGenerator != null) {
+			payloadGenerator.fill(msg);
+		}
+	}
+
+	/**
+	 * Sets the send time of a message that is about to be sent, if end to end latency is measured.
+	 */
+	protected void stampSendTime(final Message msg) throws JMSException {
+		if (cmdLine.hasOption(CMD_SEND_TIME)) {
+			EndToEndLatency.stamp(msg);
+		}
+	}
+
 	protected Message createMessageFromFile(final String data, String type, String encoding)
 			throws IOException, JMSException, UnsupportedEncodingException, JsonParseException, JsonMappingException {
+		return createMessageFromFile(sess, data, type, encoding);
+	}
+
+	protected Message createMessageFromFile(final Session sess, final String data, String type, String encoding)
+			throws IOException, JMSException, UnsupportedEncodingException, JsonParseException, JsonMappingException {
 		
 		Message outMsg = null;
+		final File file = new File(data.substring(1));
+		if (file.length() >= largeFileThreshold && !type.equals(TYPE_MAP)) {
+			return createMessageFromLargeFile(sess, file, type, encoding);
+		}
 		// Load file.
-		byte[] bytes = FileUtils.readFileToByteArray(new File(data
-				.substring(1)));
+		byte[] bytes = FileUtils.readFileToByteArray(file);
 		if (type.equals(TYPE_TEXT)) {
 			outMsg = sess.createTextMessage(new String(bytes, encoding));
 		} else if(type.equals(TYPE_BYTES)) {
 			BytesMessage bytesMsg = sess.createBytesMessage();
 			bytesMsg.writeBytes(bytes);
+			bytesMsg.reset();
 			outMsg = bytesMsg;
 		} else if(type.equals(TYPE_MAP)) {
 			MapMessage mapMsg = sess.createMapMessage();
@@ -802,9 +2810,53 @@ public class A {
 		return outMsg;
 	}
 
+	/**
+	 * Loads a large file through a memory mapping, so that no heap copy of the whole file is needed
+	 * besides the message itself.
+	 */
+	protected Message createMessageFromLargeFile(final Session sess, final File file, final String type,
+			final String encoding) throws IOException, JMSException {
+		MappedFileLoader loader = new MappedFileLoader();
+		if (type.equals(TYPE_TEXT)) {
+			return sess.createTextMessage(loader.readText(file, Charset.forName(encoding)));
+		} else if (type.equals(TYPE_BYTES)) {
+			BytesMessage bytesMsg = sess.createBytesMessage();
+			loader.writeTo(file, bytesMsg);
+			bytesMsg.reset();
+			return bytesMsg;
+		} else {
+			throw new IllegalArgumentException(CMD_TYPE + ": " + type);
+		}
+	}
+
+	/**
+	 * Creates a message with a body that is streamed from the file when sent, using the large message support
+	 * of the provider. ActiveMQ 5 sends a blob message, uploaded as configured by jms.blobTransferPolicy.uploadUrl.
+	 * Artemis sends a large bytes message. Other providers get a bytes message loaded in chunks.
+	 */
+	protected Message createStreamMessage(final Session session, final File file) throws IOException, JMSException {
+		if (session instanceof ActiveMQSession) {
+			return ((ActiveMQSession) session).createBlobMessage(file);
+		} else if (session instanceof org.apache.activemq.artemis.jms.client.ActiveMQSession) {
+			BytesMessage bytesMsg = session.createBytesMessage();
+			// Read by the producer when sending. Artemis closes the stream at end of file.
+			bytesMsg.setObjectProperty(ARTEMIS_INPUT_STREAM,
+					new BufferedInputStream(new FileInputStream(file), STREAM_CHUNK_SIZE));
+			return bytesMsg;
+		} else {
+			output("Streaming is not supported by this provider. Sending file as a bytes message");
+			return createMessageFromLargeFile(session, file, TYPE_BYTES, Charset.defaultCharset().name());
+		}
+	}
+
 	// Accepts a plain name, queue://<name>, topic://<name> etc.
 	protected Destination createDestination(final String name)
 			throws JMSException {
+		return createDestination(sess, name);
+	}
+
+	protected Destination createDestination(final Session sess, final String name)
+			throws JMSException {
 		// support queue:// as well.
 		final String correctedName = name.replaceFirst("^queue://", "queue:").replaceFirst("^topic://", "topic:");
 		if (correctedName.toLowerCase().startsWith("queue:")) {
@@ -830,6 +2882,11 @@ public class A {
 
 	protected void executeBrowse(final CommandLine cmdLine)
 			throws JMSException, IOException {
+		final PayloadSearch search = createPayloadSearch(cmdLine);
+		if (cmdLine.hasOption(CMD_PAGE_SIZE)) {
+			browsePaged(cmdLine, cmdLine.getArgs()[0], msg -> browseMessage(msg, search, cmdLine));
+			return;
+		}
 		final Queue q = sess.createQueue(cmdLine.getArgs()[0]);
 		QueueBrowser qb = null;
 		// Selector aware?
@@ -847,19 +2904,213 @@ public class A {
 		while (en.hasMoreElements() && (i < count || count == 0)) {
 			Object obj = en.nextElement();
 			Message msg = (Message) obj;
-			if (cmdLine.hasOption(CMD_FIND)) {
-				String needle = cmdLine.getOptionValue(CMD_FIND);
-				// need to search for some payload value
-				if (msg instanceof TextMessage) {
-					String haystack = ((TextMessage) msg).getText();
-					if (haystack.contains(needle)) {
-						outputMessage(msg, cmdLine.hasOption(CMD_JMS_HEADERS));
-					}
+			browseMessage(msg, search, cmdLine);
+			++i;
+		}
+	}
+
+	/**
+	 * Browses the whole queue, or the messages matching -s and -f, at most -c, and outputs a uniform random sample
+	 * of --sample messages, in queue order. Only the sample is kept in memory. With -x, the sample is written to a
+	 * dump instead. The messages stay on the queue.
+	 */
+	protected void executeSample(final CommandLine cmdLine) throws JMSException, IOException, ScriptException {
+		final PayloadSearch search = createPayloadSearch(cmdLine);
+		final Reservoir<Message> reservoir = new Reservoir<>(Integer.parseInt(cmdLine.getOptionValue(CMD_SAMPLE)));
+		browseQueue(cmdLine, cmdLine.getArgs()[0], msg -> {
+			if (search == null || search.matches(msg)) {
+				reservoir.add(msg);
+			}
+		});
+		final List<Message> sample = reservoir.getSample();
+		if (cmdLine.hasOption(CMD_WRITE_DUMP)) {
+			if (sample.isEmpty()) {
+				output("No messages found - no file written");
+			} else {
+				writeDumpFile(cmdLine, sample);
+			}
+		} else {
+			final long[] positions = reservoir.getPositions();
+			for (int i = 0; i < sample.size(); i++) {
+				if (profiler == null && recordWriter == null) {
+					output("Sampled message ", positions[i] + 1, " of ", reservoir.getSeen());
+				}
+				browseMessage(sample.get(i), search, cmdLine);
+			}
+		}
+		output("Sampled ", sample.size(), " of ", reservoir.getSeen(), " msgs", search != null ? " found" : "");
+	}
+
+	/**
+	 * Compares the queue with the queue of --diff, on this broker or on --diff-broker, or with a dump file given as
+	 * --diff @file. Both sides are browsed, or read, once. Prints the messages only on either side and those with
+	 * different content, by JMSMessageID or with --diff-by content by content only.
+	 */
+	protected void executeDiff(final CommandLine cmdLine) throws JMSException, IOException {
+		final String by = cmdLine.getOptionValue(CMD_DIFF_BY, DIFF_BY_ID);
+		if (!DIFF_BY_ID.equals(by) && !DIFF_BY_CONTENT.equals(by)) {
+			output("Option --" + CMD_DIFF_BY + " must be " + DIFF_BY_ID + " or " + DIFF_BY_CONTENT);
+			return;
+		}
+		final String nameA = cmdLine.getArgs()[0];
+		final String nameB = cmdLine.getOptionValue(CMD_DIFF);
+		final MessageDumpWriter dumpWriter = new MessageDumpWriter();
+		try (QueueDiff diff = new QueueDiff(DIFF_BY_CONTENT.equals(by), QueueDiff.DEFAULT_RUN_SIZE)) {
+			browseQueue(cmdLine, nameA, msg -> diff.addA(dumpWriter.toDumpMessage(msg)));
+			if (nameB.startsWith("@")) {
+				readDump(new File(nameB.substring(1)), diff);
+			} else if (cmdLine.hasOption(CMD_DIFF_BROKER)) {
+				final Connection diffConnection = createConnection(cmdLine.getOptionValue(CMD_DIFF_BROKER), protocol);
+				try {
+					diffConnection.start();
+					final Session diffSession = createSession(diffConnection, false, Session.AUTO_ACKNOWLEDGE);
+					browseQueue(cmdLine, diffConnection, diffSession, nameB,
+							msg -> diff.addB(dumpWriter.toDumpMessage(msg)));
+				} finally {
+					diffConnection.close();
 				}
 			} else {
+				browseQueue(cmdLine, nameB, msg -> diff.addB(dumpWriter.toDumpMessage(msg)));
+			}
+			final long[] differences = new long[QueueDiff.Difference.values().length];
+			diff.diff((difference, messageId) -> {
+				differences[difference.ordinal()]++;
+				switch (difference) {
+				case ONLY_IN_A:
+					output("Only in ", nameA, ": ", messageId);
+					break;
+				case ONLY_IN_B:
+					output("Only in ", nameB, ": ", messageId);
+					break;
+				default:
+					output("Different content: ", messageId);
+				}
+			});
+			output("Compared ", diff.getCountA(), " msgs in ", nameA, " with ", diff.getCountB(), " msgs in ", nameB,
+					": ", differences[QueueDiff.Difference.ONLY_IN_A.ordinal()], " only in ", nameA, ", ",
+					differences[QueueDiff.Difference.ONLY_IN_B.ordinal()], " only in ", nameB, ", ",
+					differences[QueueDiff.Difference.CONTENT.ordinal()], " with different content, ",
+					diff.getEqual(), " equal");
+		}
+	}
+
+	/**
+	 * Creates a connection to another broker, with the same protocol and credentials as the main connection.
+	 */
+	protected Connection createConnection(final String url, final Protocol protocol) throws JMSException {
+		final ConnectionFactory factory;
+		try {
+			factory = createConnectionFactory(url, protocol);
+		} catch (JMSException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		configureConnectionFactory(factory);
+		return user != null && password != null ? factory.createConnection(user, password) : factory.createConnection();
+	}
+
+	/**
+	 * Reads a dump file one message at a time, so that large dumps are not held in memory.
+	 */
+	private void readDump(final File file, final QueueDiff diff) throws IOException {
+		final ObjectMapper mapper = new ObjectMapper();
+		final ObjectReader reader = mapper.readerFor(MessageDump.class);
+		try (JsonParser parser = mapper.getFactory().createParser(file)) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new IOException("Not a dump of messages: " + file);
+			}
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				diff.addB(reader.readValue(parser));
+			}
+		}
+	}
+
+	/**
+	 * Prints a browsed message, if it matches the search, followed by what was found.
+	 * @param search the search, or null to print all messages
+	 */
+	protected void browseMessage(final Message msg, final PayloadSearch search, final CommandLine cmdLine)
+			throws JMSException, IOException {
+		if (search != null) {
+			final List<String> found = search.find(msg);
+			if (!found.isEmpty()) {
 				outputMessage(msg, cmdLine.hasOption(CMD_JMS_HEADERS));
+				output("Found: ", String.join(", ", found));
 			}
-			++i;
+		} else {
+			outputMessage(msg, cmdLine.hasOption(CMD_JMS_HEADERS));
+		}
+	}
+
+	/**
+	 * Browses a queue with a {@link PagedBrowser}, in windows of at most --page-size messages.
+	 * @return the number of messages browsed
+	 */
+	protected long browsePaged(final CommandLine cmdLine, final String queue,
+			final PagedBrowser.MessageHandler handler) throws JMSException, IOException {
+		return browsePaged(cmdLine, conn, queue, handler);
+	}
+
+	protected long browsePaged(final CommandLine cmdLine, final Connection connection, final String queue,
+			final PagedBrowser.MessageHandler handler) throws JMSException, IOException {
+		final PagedBrowser browser = new PagedBrowser(connection, queue, cmdLine.getOptionValue(CMD_SELECTOR),
+				Integer.parseInt(cmdLine.getOptionValue(CMD_PAGE_SIZE)),
+				Integer.parseInt(cmdLine.getOptionValue(CMD_BROWSERS, DEFAULT_BROWSERS)));
+		final long browsed;
+		try {
+			browsed = browser.browse(handler, Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL)));
+		} catch (JMSException | IOException | RuntimeException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted while browsing");
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+		if (browser.getTruncated() > 0) {
+			output("Warning: ", browser.getTruncated(), " windows had more than --", CMD_PAGE_SIZE, " messages with "
+					+ "the same JMSTimestamp and JMSPriority. Some messages may be missing");
+		}
+		return browsed;
+	}
+
+	/**
+	 * Browses a queue, or the messages matching -s, at most -c. Paged with --page-size.
+	 */
+	protected void browseQueue(final CommandLine cmdLine, final String queue,
+			final PagedBrowser.MessageHandler handler) throws JMSException, IOException {
+		browseQueue(cmdLine, conn, sess, queue, handler);
+	}
+
+	/**
+	 * Browses a queue with the given connection, and session unless paged.
+	 */
+	protected void browseQueue(final CommandLine cmdLine, final Connection connection, final Session session,
+			final String queue, final PagedBrowser.MessageHandler handler) throws JMSException, IOException {
+		if (cmdLine.hasOption(CMD_PAGE_SIZE)) {
+			browsePaged(cmdLine, connection, queue, handler);
+			return;
+		}
+		final Queue q = session.createQueue(queue);
+		final QueueBrowser qb = cmdLine.hasOption(CMD_SELECTOR)
+				? session.createBrowser(q, cmdLine.getOptionValue(CMD_SELECTOR)) : session.createBrowser(q);
+		final int count = Integer.parseInt(cmdLine.getOptionValue(CMD_COUNT, DEFAULT_COUNT_ALL));
+		try {
+			@SuppressWarnings("unchecked")
+			final Enumeration<Message> en = qb.getEnumeration();
+			for (int i = 0; (i < count || count == 0) && en.hasMoreElements(); i++) {
+				handler.handle(en.nextElement());
+			}
+		} catch (JMSException | IOException | RuntimeException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSException("Interrupted while browsing");
+		} catch (Exception e) {
+			throw new IOException(e);
+		} finally {
+			qb.close();
 		}
 	}
 
@@ -905,6 +3156,14 @@ public class A {
 
 	protected void outputMessage(Message msg, boolean printJMSHeaders)
 			throws JMSException, IOException {
+		if (profiler != null) {
+			profiler.add(msg);
+			return;
+		}
+		if (recordWriter != null) {
+			recordWriter.write(msg);
+			return;
+		}
 		
 		output("-----------------");
 		if (printJMSHeaders) {
@@ -936,13 +3195,14 @@ public class A {
 			}
 		} else if (msg instanceof BytesMessage) {
 			BytesMessage bmsg = (BytesMessage) msg;
-			byte[] bytes = new byte[(int) bmsg.getBodyLength()];
-			bmsg.readBytes(bytes);
 			if (fos != null) {
-				fos.write(bytes);
-				fos.close();
+				try (OutputStream out = new BufferedOutputStream(fos, STREAM_CHUNK_SIZE)) {
+					writeBody(bmsg, out);
+				}
 				output("Payload written to file ", file.getAbsolutePath());
 			} else {
+				byte[] bytes = new byte[(int) bmsg.getBodyLength()];
+				bmsg.readBytes(bytes);
 				output("Hex Payload:");
 				output(bytesToHex(bytes));
 			}
@@ -956,6 +3216,16 @@ public class A {
 				Object property = mapMsg.getObject(name);
 				output("  ", name, ": ", null != property ? property.toString() : "[null]");
 			}
+		} else if (msg instanceof BlobMessage) {
+			BlobMessage blobMsg = (BlobMessage) msg;
+			if (fos != null) {
+				try (InputStream in = blobMsg.getInputStream(); OutputStream out = fos) {
+					IOUtils.copy(in, out, STREAM_CHUNK_SIZE);
+				}
+				output("Payload written to file ", file.getAbsolutePath());
+			} else {
+				output("Blob Payload: ", blobMsg.getURL());
+			}
 		} else if (msg instanceof ActiveMQMessage) { // Typically advisory messages of internal AMQ events.
 			ActiveMQMessage cmdMsg = (ActiveMQMessage) msg;
 			displayAdvisoryMessage(cmdMsg);
@@ -964,6 +3234,23 @@ public class A {
 		}
 	}
 
+	/**
+	 * Writes the body of a bytes message to a stream, without holding all of it in memory.
+	 * Artemis large messages are streamed straight from the wire when --stream is given.
+	 */
+	protected void writeBody(final BytesMessage msg, final OutputStream out) throws JMSException, IOException {
+		if (cmdLine.hasOption(CMD_STREAM) && msg instanceof org.apache.activemq.artemis.jms.client.ActiveMQMessage) {
+			// Blocks until the whole body is written
+			msg.setObjectProperty(ARTEMIS_SAVE_STREAM, out);
+		} else {
+			byte[] chunk = new byte[STREAM_CHUNK_SIZE];
+			int n;
+			while ((n = msg.readBytes(chunk)) > 0) {
+				out.write(chunk, 0, n);
+			}
+		}
+	}
+
 	protected void displayAdvisoryMessage(ActiveMQMessage cmdMsg) throws JMSException {
 		final String topic = cmdMsg.getJMSDestination().toString();
 		final String advisoryMsg = advisoryDataStructureToString(cmdMsg.getDataStructure());
@@ -1103,10 +3390,7 @@ public class A {
 	}
 
 	protected String timestampToString(long timestamp) {
-		Date date = new Date(timestamp);
-		Format format = new SimpleDateFormat(DEFAULT_DATE_FORMAT);
-		String timeString = format.format(date);
-		return timeString;
+		return DATE_FORMAT.format(Instant.ofEpochMilli(timestamp));
 	}
 
 	protected void outputProperties(Message msg) throws JMSException {
@@ -1128,12 +3412,57 @@ public class A {
 		output.output(args);
 	}
 
+	/**
+	 * Sets up records for --format, written to the file given by -o or else to standard output. Then the other
+	 * output goes to standard error instead, so that standard output only has records.
+	 */
+	protected void openRecordOutput(final CommandLine cmdLine) throws IOException {
+		final String format = cmdLine.getOptionValue(CMD_FORMAT, MessageRecordWriter.FORMAT_TEXT);
+		if (format.equals(MessageRecordWriter.FORMAT_TEXT)) {
+			return;
+		}
+		if (cmdLine.hasOption(CMD_OUTPUT)) {
+			recordFile = new BufferedOutput(new FileOutputStream(cmdLine.getOptionValue(CMD_OUTPUT)));
+			recordOutput = recordFile;
+		} else {
+			recordOutput = output;
+			if (output == console) {
+				output = errorConsole;
+			}
+		}
+		recordWriter = MessageRecordWriter.create(format, recordOutput);
+	}
+
+	protected void closeRecordOutput() throws IOException {
+		if (recordFile != null) {
+			recordFile.close();
+			recordFile = null;
+		} else if (recordOutput == console && output != console) {
+			console.flush();
+			output = console;
+		}
+		recordOutput = null;
+		recordWriter = null;
+	}
+
+	// Writes all buffered output, i.e. when stopped with Ctrl-C
+	protected void flushOutput() {
+		output.flush();
+		final AOutput records = recordOutput;
+		if (records != null) {
+			records.flush();
+		}
+	}
+
 	protected String bytesToHex(byte[] bytes) {
-		StringBuilder sb = new StringBuilder();
-	    for (byte b : bytes) {
-	        sb.append(String.format("%02X ", b));
-	    }
-	    return sb.toString();
+		// Two digits and a space per byte
+		char[] hex = new char[bytes.length * 3];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 3] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			hex[i * 3 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+			hex[i * 3 + 2] = ' ';
+		}
+		return new String(hex);
 	}
 
 	protected Options createOptions() {
@@ -1142,7 +3471,8 @@ public class A {
 				"URL to broker. defaults to: tcp://localhost:61616");
 		opts.addOption(CMD_GET, "get", false, "Get a message from destination");
 		opts.addOption(CMD_PUT, "put", true,
-				"Put a message. Specify data. if starts with @, a file is assumed and loaded");
+				"Put a message. Specify data. if starts with @, a file is assumed and loaded. "
+				+ "If starts with gen:, a payload is generated for each message");
 		opts.addOption(CMD_TYPE, "type", true,
 				"Message type to put, [bytes, text, map] - defaults to text");
 		opts.addOption(CMD_ENCODING, "encoding", true,
@@ -1157,7 +3487,8 @@ public class A {
 				CMD_OUTPUT,
 				"output",
 				true,
-				"file to write payload to. If multiple messages, a -1.<ext> will be added to the file. BytesMessage will be written as-is, TextMessage will be written in UTF-8");
+				"file to write payload to. If multiple messages, a -1.<ext> will be added to the file. BytesMessage will be written as-is, TextMessage will be written in UTF-8. "
+				+ "With --" + CMD_FORMAT + ", all records are written to this file");
 		opts.addOption(
 				CMD_COUNT,
 				"count",
@@ -1169,11 +3500,42 @@ public class A {
 				CMD_COPY_QUEUE,
 				"copy-queue",
 				true,
-				"Copy all messages from this to target. Limited by maxBrowsePageSize in broker settings (default 400).");
+				"Copy all messages from this to target. Limited by maxBrowsePageSize in broker settings (default 400), "
+				+ "unless --" + CMD_PAGE_SIZE + " is given.");
 		opts.addOption(CMD_MOVE_QUEUE, "move-queue", true,
 				"Move all messages from this to target");
 		opts.addOption(CMD_FIND, "find", true,
-				"Search for messages in queue with this value in payload. Use with browse. Limited by maxBrowsePageSize in broker settings (default 400).");
+				"Search for messages in queue with this value in payload, map values or properties. Repeat to search for several values. "
+				+ "Use with browse or copy. Limited by maxBrowsePageSize in broker settings (default 400), "
+				+ "unless --" + CMD_PAGE_SIZE + " is given.");
+		opts.addOption(null, CMD_FORMAT, true,
+				"Output format of browsed and received messages: " + MessageRecordWriter.FORMAT_TEXT + ", "
+				+ MessageRecordWriter.FORMAT_NDJSON + " for a JSON object per line or " + MessageRecordWriter.FORMAT_CSV
+				+ " for a row per message, with headers, properties and body. Written to the file of -" + CMD_OUTPUT
+				+ ", or to standard output, and then other output goes to standard error. Default "
+				+ MessageRecordWriter.FORMAT_TEXT);
+		opts.addOption(null, CMD_PROFILE, false,
+				"Summarize browsed or received messages instead of outputting them: counts by type, body sizes, ages, "
+				+ "redeliveries and the most common values of JMSType and of each property");
+		opts.addOption(null, CMD_TOP, true,
+				"Number of values to show per property with --" + CMD_PROFILE + ". Default " + DEFAULT_TOP);
+		opts.addOption(null, CMD_SAMPLE, true,
+				"Browse the whole queue, or the messages matching -" + CMD_SELECTOR + " and -" + CMD_FIND + ", and output "
+				+ "this many messages picked uniformly at random, in queue order. With -" + CMD_WRITE_DUMP
+				+ ", the sample is written to a dump and stays on the queue. Use --" + CMD_PAGE_SIZE
+				+ " for queues deeper than the browse page size");
+		opts.addOption(null, CMD_DIFF, true,
+				"Compare the queue with this queue, or with a dump file written by -" + CMD_WRITE_DUMP + " given as @<file>. "
+				+ "Prints messages only in either and messages with different content. Use with -" + CMD_SELECTOR
+				+ " and --" + CMD_PAGE_SIZE);
+		opts.addOption(null, CMD_DIFF_BROKER, true,
+				"Broker URL of the queue of --" + CMD_DIFF + ", with the same protocol and credentials. Default the same broker");
+		opts.addOption(null, CMD_DIFF_BY, true,
+				"Match messages by " + DIFF_BY_ID + ", JMSMessageID, and compare their content, or by " + DIFF_BY_CONTENT
+				+ " only, for copies with new message IDs. Default " + DIFF_BY_ID);
+		opts.addOption(null, CMD_FIND_REGEX, true,
+				"Search for messages with a match of this regular expression, like -" + CMD_FIND + ". Repeat to search for "
+				+ "several. Bytes messages are decoded with -" + CMD_ENCODING);
 		opts.addOption(CMD_SELECTOR, "selector", true,
 				"Browse or get with selector. I.e JMSType = 'car' AND color = 'blue'");
 		opts.addOption(CMD_WAIT, "wait", true,
@@ -1266,6 +3628,99 @@ public class A {
 				"Line separated batch file. Used with -p to produce one message per line in file. " +
 				"Used together with Script where each batch line can be accessed with variable 'entry' ");
 
+		opts.addOption(null, CMD_PRODUCERS, true,
+				"Number of concurrent producers, each with its own connection, used to put <count> messages or the lines "
+				+ "of a batch file, or to copy in a pipeline with a browsing thread. Default 1");
+		opts.addOption(null, CMD_STREAM, false,
+				"Stream large messages between file and broker with constant memory. Used with -" + CMD_PUT
+				+ " @<file> and with -" + CMD_OUTPUT + ". Artemis large messages or ActiveMQ 5 blob messages, "
+				+ "which need jms.blobTransferPolicy.uploadUrl in the broker URL");
+		opts.addOption(null, CMD_CONSUMERS, true,
+				"Number of competing consumers, each with its own session, used to get or move messages. OpenWire and "
+				+ "AMQP consumers prefetch " + DEFAULT_COMPETING_PREFETCH + " messages each, unless --" + CMD_PREFETCH
+				+ " is given, and Artemis Core consumers buffer " + DEFAULT_COMPETING_CONSUMER_WINDOW
+				+ " bytes, unless --" + CMD_CONSUMER_WINDOW + " is given. Default 1");
+		opts.addOption(null, CMD_ACK_MODE, true,
+				"Acknowledge mode for get and write dump: " + ACK_MODE_AUTO + ", " + ACK_MODE_CLIENT + " or "
+				+ ACK_MODE_DUPS_OK + ". Client acknowledges in batches, dups-ok also enables optimizeAcknowledge "
+				+ "on OpenWire. Default " + ACK_MODE_AUTO);
+		opts.addOption(null, CMD_ACK_BATCH, true,
+				"Messages per acknowledgement with --" + CMD_ACK_MODE + " " + ACK_MODE_CLIENT + ". Default "
+				+ DEFAULT_ACK_BATCH);
+		opts.addOption(null, CMD_ACK_INTERVAL, true,
+				"Milliseconds after which pending messages are acknowledged with --" + CMD_ACK_MODE + " "
+				+ ACK_MODE_CLIENT + ", even if the batch is not full");
+		opts.addOption(null, CMD_LISTENER, false,
+				"Get messages with a message listener, which hands them over to be printed, instead of polling");
+		opts.addOption(null, CMD_PREFETCH, true,
+				"Messages to prefetch per consumer. OpenWire prefetchPolicy, AMQP link credit. Not for Artemis Core, "
+				+ "see --" + CMD_CONSUMER_WINDOW);
+		opts.addOption(null, CMD_CONSUMER_WINDOW, true,
+				"Bytes of messages buffered per Artemis Core consumer, consumerWindowSize. 0 disables buffering");
+		opts.addOption(null, CMD_RATE, true,
+				"Target rate in messages per second when putting <count> messages. Send latency is measured from the "
+				+ "scheduled send time and printed as percentiles");
+		opts.addOption(null, CMD_RAMP_UP, true,
+				"Seconds to ramp up linearly to the target --" + CMD_RATE + ". Default 0");
+		opts.addOption(null, CMD_REPORT_INTERVAL, true,
+				"Seconds between latency reports during long running operations. 0 disables. Default "
+				+ DEFAULT_REPORT_INTERVAL);
+		opts.addOption(null, CMD_COMMIT_BATCH, true,
+				"Messages per transaction for put, move, copy, purge and restore. Defaults: move 1, purge "
+				+ DEFAULT_PURGE_BATCH + ", restore all messages in one transaction, put and copy not transacted");
+		opts.addOption(null, CMD_COMMIT_BYTES, true,
+				"Commit put, move, copy and restore transactions when this many bytes of payload are pending. "
+				+ "Without --" + CMD_COMMIT_BATCH + " only the payload size decides when to commit");
+		opts.addOption(null, CMD_ASYNC_SEND, false,
+				"Send without waiting for the broker to confirm each message. Send errors are counted and printed. "
+				+ "Uses async send in OpenWire and non blocking sends in Artemis Core. Not for AMQP");
+		opts.addOption(null, CMD_SEND_TIMEOUT, true,
+				"Milliseconds to wait for Artemis Core to confirm --" + CMD_ASYNC_SEND + " sends before closing. "
+				+ "Default " + DEFAULT_SEND_TIMEOUT);
+		opts.addOption(null, CMD_GROUP_LANES, true,
+				"Move messages through this many lanes by JMSXGroupID, each with its own transacted producer, so "
+				+ "that messages of a group keep their order. Batches of --" + CMD_COMMIT_BATCH
+				+ " messages, default " + DEFAULT_LANE_BATCH + ", are acknowledged once all lanes have committed");
+		opts.addOption(null, CMD_JOURNAL, true,
+				"Journal file for move. Each message is recorded before it is acknowledged or committed on the source. "
+				+ "Run the move again with the same journal to resume it without duplicates");
+		opts.addOption(null, CMD_SERVER_SIDE, false,
+				"Move, copy or purge messages on the broker, without sending them to A. Uses the management address "
+				+ "of Artemis, or JMX of ActiveMQ 5 with --" + CMD_JMX_URL + ". Falls back to the client if the broker "
+				+ "cannot do it or JMX cannot be reached");
+		opts.addOption(null, CMD_SERVER_TIMEOUT, true,
+				"Milliseconds to wait for Artemis to reply to a --" + CMD_SERVER_SIDE + " operation. Default "
+				+ DEFAULT_SERVER_TIMEOUT);
+		opts.addOption(null, CMD_JMX_URL, true,
+				"JMX service URL of an ActiveMQ 5 broker for --" + CMD_SERVER_SIDE
+				+ ", i.e. service:jmx:rmi:///jndi/rmi://localhost:1099/jmxrmi. Uses -U and -P as JMX credentials");
+		opts.addOption(null, CMD_PURGE, false,
+				"Remove all messages from the destination, or those matching -s, at most -c");
+		opts.addOption(null, CMD_PAGE_SIZE, true,
+				"Browse, find and copy queues deeper than this browse page size of the broker, i.e. maxBrowsePageSize "
+				+ "of ActiveMQ 5 (400), by browsing windows of JMSTimestamp in parallel");
+		opts.addOption(null, CMD_BROWSERS, true,
+				"Number of parallel browsers with --" + CMD_PAGE_SIZE + ". Default " + DEFAULT_BROWSERS);
+		opts.addOption(null, CMD_TRANSFORMERS, true,
+				"Number of threads that filter by -" + CMD_FIND + " or --" + CMD_FIND_REGEX + " and transform by script when copying with --"
+				+ CMD_PRODUCERS + ". Default 1");
+		opts.addOption(null, CMD_PING, true,
+				"Send requests with this data, like -p, to a responder and measure the round trip time. Each "
+				+ "requester waits for the reply on a temporary queue for -w ms, default " + DEFAULT_REPLY_TIMEOUT
+				+ ". Use -c for the number of requests and --" + CMD_PRODUCERS + " for concurrent requesters");
+		opts.addOption(null, CMD_RESPOND, false,
+				"Answer requests by echoing each message to its reply-to with the correlation ID. Runs until stopped, "
+				+ "or until -c requests are answered or none arrives in -w ms. Use --" + CMD_CONSUMERS
+				+ " for concurrent responders");
+		opts.addOption(null, CMD_SEND_TIME, false,
+				"Put the send time in each message, in nanoseconds, for get --" + CMD_LATENCY);
+		opts.addOption(null, CMD_LATENCY, false,
+				"Get messages and print end to end latency percentiles instead of the messages. Uses the send time "
+				+ "from put --" + CMD_SEND_TIME + " if present, else JMSTimestamp");
+		opts.addOption(null, CMD_SEND_WINDOW, true,
+				"Bytes of unconfirmed messages allowed in flight with --" + CMD_ASYNC_SEND
+				+ ". OpenWire producerWindowSize, Artemis confirmationWindowSize. Default " + DEFAULT_SEND_WINDOW);
+
 		return opts;
 	}
 
@@ -5,4 +5,10 @@ package co.nordlander.a;
  */
 public interface AOutput {
 	void output(Object... args);
+
+	/**
+	 * Writes output that is buffered, if any.
+	 */
+	default void flush() {
+	}
 }
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+/**
+ * Acknowledges a client acknowledge session every N messages and/or every N milliseconds.
+ * Acknowledging a message acknowledges all messages the session consumed before it, so one
+ * acknowledgement covers the whole batch. For other sessions, this is a no-op.
+ */
+public class Acknowledger {
+
+	private final boolean clientAcknowledge;
+	private final int maxMessages;
+	private final long intervalNanos;
+	private Message last;
+	private int pendingMessages;
+	private long batchStart;
+	private long acknowledgements;
+
+	/**
+	 * @param session the session the messages are consumed with
+	 * @param maxMessages acknowledge when this many messages are pending. 0 means no limit
+	 * @param intervalMillis acknowledge when the oldest pending message is this old. 0 means no limit
+	 */
+	public Acknowledger(final Session session, final int maxMessages, final long intervalMillis) throws JMSException {
+		this.clientAcknowledge = !session.getTransacted() && session.getAcknowledgeMode() == Session.CLIENT_ACKNOWLEDGE;
+		this.maxMessages = maxMessages;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+	}
+
+	/**
+	 * Call after each message is processed. Acknowledges if the batch is full or old enough.
+	 */
+	public void add(final Message msg) throws JMSException {
+		if (!clientAcknowledge) {
+			return;
+		}
+		last = msg;
+		final long now = System.nanoTime();
+		if (pendingMessages++ == 0) {
+			batchStart = now;
+		}
+		if ((maxMessages > 0 && pendingMessages >= maxMessages) || (intervalNanos > 0 && now - batchStart >= intervalNanos)) {
+			acknowledge();
+		}
+	}
+
+	/**
+	 * Call when no message arrived in time. Acknowledges if the pending messages are old enough.
+	 */
+	public void acknowledgeIfDue() throws JMSException {
+		if (pendingMessages > 0 && intervalNanos > 0 && System.nanoTime() - batchStart >= intervalNanos) {
+			acknowledge();
+		}
+	}
+
+	/**
+	 * @return milliseconds until the pending messages are old enough to be acknowledged, or the interval if none are
+	 * pending
+	 */
+	public long getMillisUntilDue() {
+		if (pendingMessages == 0) {
+			return TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(batchStart + intervalNanos - System.nanoTime()));
+	}
+
+	/**
+	 * Acknowledges pending messages, if any.
+	 */
+	public void acknowledge() throws JMSException {
+		if (last != null) {
+			last.acknowledge();
+			acknowledgements++;
+			last = null;
+			pendingMessages = 0;
+		}
+	}
+
+	public boolean isClientAcknowledge() {
+		return clientAcknowledge;
+	}
+
+	/**
+	 * @return true if messages are acknowledged after an interval, which the receive loop has to check
+	 */
+	public boolean hasInterval() {
+		return clientAcknowledge && intervalNanos > 0;
+	}
+
+	public long getAcknowledgements() {
+		return acknowledgements;
+	}
+}
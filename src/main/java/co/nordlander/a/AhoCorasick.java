@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton, to find any number of patterns in one pass over the input, in time linear in the length
+ * of the input. Patterns are sequences of symbols, i.e. chars or unsigned bytes.
+ *
+ * The automaton is a complete DFA, so each symbol costs one table lookup. Symbols that occur in no pattern share
+ * one column of the table, which keeps it small for large alphabets like chars. Immutable and thread safe.
+ */
+public class AhoCorasick {
+
+	public static final int START = 0;
+	private static final int[] NONE = new int[0];
+
+	// Symbol to column. Column 0 is for symbols that occur in no pattern
+	private final int[] columns;
+	private final int columnCount;
+	private final int[] transitions;
+	private final int[][] matches;
+
+	/**
+	 * @param patterns patterns as symbols in [0, alphabetSize)
+	 * @param alphabetSize number of symbols, i.e. 65536 for chars or 256 for bytes
+	 */
+	public AhoCorasick(final int[][] patterns, final int alphabetSize) {
+		columns = new int[alphabetSize];
+		int count = 1;
+		for (int[] pattern : patterns) {
+			for (int symbol : pattern) {
+				if (columns[symbol] == 0) {
+					columns[symbol] = count++;
+				}
+			}
+		}
+		columnCount = count;
+
+		// The trie of the patterns. -1 is no edge
+		final List<int[]> trie = new ArrayList<>();
+		final List<List<Integer>> ends = new ArrayList<>();
+		addState(trie, ends);
+		for (int p = 0; p < patterns.length; p++) {
+			int state = START;
+			for (int symbol : patterns[p]) {
+				final int column = columns[symbol];
+				if (trie.get(state)[column] < 0) {
+					trie.get(state)[column] = trie.size();
+					addState(trie, ends);
+				}
+				state = trie.get(state)[column];
+			}
+			ends.get(state).add(p);
+		}
+
+		// Breadth first, so that the fallback of a state is complete before the state itself
+		final int states = trie.size();
+		transitions = new int[states * columnCount];
+		matches = new int[states][];
+		final int[] fallback = new int[states];
+		final int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		matches[START] = toArray(ends.get(START));
+		for (int column = 0; column < columnCount; column++) {
+			final int child = trie.get(START)[column];
+			if (child > 0) {
+				fallback[child] = START;
+				queue[tail++] = child;
+			}
+			transitions[column] = Math.max(child, START);
+		}
+		while (head < tail) {
+			final int state = queue[head++];
+			final List<Integer> stateEnds = ends.get(state);
+			for (int p : matches[fallback[state]]) {
+				stateEnds.add(p);
+			}
+			matches[state] = toArray(stateEnds);
+			for (int column = 0; column < columnCount; column++) {
+				final int child = trie.get(state)[column];
+				final int viaFallback = transitions[fallback[state] * columnCount + column];
+				if (child > 0) {
+					fallback[child] = viaFallback;
+					queue[tail++] = child;
+					transitions[state * columnCount + column] = child;
+				} else {
+					transitions[state * columnCount + column] = viaFallback;
+				}
+			}
+		}
+	}
+
+	private void addState(final List<int[]> trie, final List<List<Integer>> ends) {
+		final int[] edges = new int[columnCount];
+		Arrays.fill(edges, -1);
+		trie.add(edges);
+		ends.add(new ArrayList<>());
+	}
+
+	private static int[] toArray(final List<Integer> list) {
+		if (list.isEmpty()) {
+			return NONE;
+		}
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * @return the state after the symbol
+	 */
+	public int next(final int state, final int symbol) {
+		return transitions[state * columnCount + columns[symbol]];
+	}
+
+	/**
+	 * @return indexes of the patterns that end in this state. Empty patterns end in {@link #START}.
+	 */
+	public int[] matches(final int state) {
+		return matches[state];
+	}
+}
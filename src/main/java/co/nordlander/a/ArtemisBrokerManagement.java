@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.IOException;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.artemis.api.core.management.ResourceNames;
+import org.apache.activemq.artemis.api.jms.management.JMSManagementHelper;
+
+/**
+ * Broker side operations of Artemis, through management messages sent to the management address.
+ * Artemis cannot copy messages in bulk, nor remove a limited number of them, so those are left to the client.
+ */
+public class ArtemisBrokerManagement implements BrokerManagement {
+
+	public static final String MANAGEMENT_ADDRESS = "activemq.management";
+	private static final int FLUSH_LIMIT = 10000;
+
+	private final Session session;
+	private final long timeout;
+	private final MessageProducer requests;
+	private final Queue replyQueue;
+	private final MessageConsumer replies;
+
+	/**
+	 * @param session a non transacted session of a started connection
+	 * @param timeout milliseconds to wait for the result of an operation
+	 */
+	public ArtemisBrokerManagement(final Session session, final long timeout) throws JMSException {
+		this.session = session;
+		this.timeout = timeout;
+		requests = session.createProducer(session.createQueue(MANAGEMENT_ADDRESS));
+		replyQueue = session.createTemporaryQueue();
+		replies = session.createConsumer(replyQueue);
+	}
+
+	@Override
+	public long move(final String source, final String target, final String selector, final int count)
+			throws JMSException {
+		return invoke(source, "moveMessages", FLUSH_LIMIT, selector, target, false, count > 0 ? count : -1);
+	}
+
+	@Override
+	public long copy(final String source, final String target, final String selector, final int count) {
+		return -1;
+	}
+
+	@Override
+	public long purge(final String queue, final String selector, final int count) throws JMSException {
+		return count > 0 ? -1 : invoke(queue, "removeMessages", FLUSH_LIMIT, selector);
+	}
+
+	private long invoke(final String queue, final String operation, final Object... params) throws JMSException {
+		Message request = session.createMessage();
+		JMSManagementHelper.putOperationInvocation(request, ResourceNames.QUEUE + queue, operation, params);
+		request.setJMSReplyTo(replyQueue);
+		requests.send(request);
+		Message reply = replies.receive(timeout);
+		if (reply == null) {
+			throw new JMSException("No reply from the management address to " + operation + " on queue " + queue);
+		}
+		try {
+			Object result = JMSManagementHelper.getResult(reply);
+			if (!JMSManagementHelper.hasOperationSucceeded(reply)) {
+				throw new JMSException(operation + " failed on queue " + queue + ": " + result);
+			}
+			return ((Number) result).longValue();
+		} catch (JMSException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new JMSException("Unexpected result of " + operation + " on queue " + queue + ": " + e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			session.close();
+		} catch (JMSException e) {
+			throw new IOException("Failed to close the management session", e);
+		}
+	}
+}
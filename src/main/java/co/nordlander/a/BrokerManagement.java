@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.jms.JMSException;
+
+/**
+ * Moves, copies and removes messages inside the broker, so that they do not travel to the client and back.
+ * Each operation returns -1 if the broker cannot do it with the given arguments, and the client should do it instead.
+ */
+public interface BrokerManagement extends Closeable {
+
+	/**
+	 * @param selector message selector, or null for all messages
+	 * @param count maximum number of messages. 0 means no limit
+	 * @return messages moved, or -1 if not supported
+	 */
+	long move(String source, String target, String selector, int count) throws JMSException, IOException;
+
+	/**
+	 * @return messages copied, or -1 if not supported
+	 */
+	long copy(String source, String target, String selector, int count) throws JMSException, IOException;
+
+	/**
+	 * @return messages removed, or -1 if not supported
+	 */
+	long purge(String queue, String selector, int count) throws JMSException, IOException;
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output to a stream through one large reusable buffer. The buffer is written when it is full, at most
+ * {@link #FLUSH_INTERVAL_MILLIS} after a line was added, and on {@link #flush()}. Compared to a print per
+ * argument on System.out, lines are written to the stream in batches, which matters when browsing thousands of
+ * messages.
+ * Thread safe. Lines of concurrent threads are never mixed.
+ */
+public class BufferedOutput implements AOutput, Closeable {
+
+	public static final int BUFFER_SIZE = 1 << 16;
+	public static final long FLUSH_INTERVAL_MILLIS = 100;
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final Writer writer;
+	// Started on the first line, so that an unused output has no thread
+	private ScheduledExecutorService flusher;
+	private boolean flushScheduled;
+
+	public BufferedOutput(final OutputStream out) {
+		writer = new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset()), BUFFER_SIZE);
+	}
+
+	@Override
+	public synchronized void output(final Object... args) {
+		try {
+			for (Object arg : args) {
+				writer.write(String.valueOf(arg));
+			}
+			writer.write(LINE_SEPARATOR);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (!flushScheduled) {
+			flushScheduled = true;
+			flusher().schedule(this::flush, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void flush() {
+		flushScheduled = false;
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private ScheduledExecutorService flusher() {
+		if (flusher == null) {
+			flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread = new Thread(task, "A output flusher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return flusher;
+	}
+
+	/**
+	 * Flushes the output and closes the stream.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (flusher != null) {
+			flusher.shutdownNow();
+		}
+		writer.close();
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.Serializable;
+import java.util.Enumeration;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageEOFException;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.jms.TextMessage;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Commits a transacted session every N messages and/or every N bytes of payload.
+ * Each batch is atomic. If the session is not transacted, nothing is committed.
+ */
+public class CommitBatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(CommitBatcher.class);
+
+	private final Session session;
+	private final int maxMessages;
+	private final long maxBytes;
+	private int pendingMessages;
+	private long pendingBytes;
+	private long batches;
+	private boolean unknownSizeWarned;
+
+	/**
+	 * @param session session to commit. May be null or non transacted, then this is a no-op.
+	 * @param maxMessages commit when this many messages are pending. 0 means no limit
+	 * @param maxBytes commit when this much payload is pending. 0 means no limit
+	 */
+	public CommitBatcher(final Session session, final int maxMessages, final long maxBytes) throws JMSException {
+		this.session = session != null && session.getTransacted() ? session : null;
+		this.maxMessages = maxMessages;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Call after each message that is part of the transaction. Commits if the batch is full.
+	 */
+	public void add(final Message msg) throws JMSException {
+		if (session == null) {
+			return;
+		}
+		long size = 0;
+		if (maxBytes > 0) {
+			size = estimateSize(msg);
+			if (size < 0) {
+				if (!unknownSizeWarned) {
+					logger.warn("Cannot tell the payload size of {}. Such messages count towards --commit-batch only",
+							msg.getClass().getSimpleName());
+					unknownSizeWarned = true;
+				}
+				size = 0;
+			}
+		}
+		pendingMessages++;
+		pendingBytes += size;
+		if ((maxMessages > 0 && pendingMessages >= maxMessages) || (maxBytes > 0 && pendingBytes >= maxBytes)) {
+			commit();
+		}
+	}
+
+	/**
+	 * Commits pending messages, if any.
+	 */
+	public void commit() throws JMSException {
+		if (session != null && pendingMessages > 0) {
+			session.commit();
+			batches++;
+			pendingMessages = 0;
+			pendingBytes = 0;
+		}
+	}
+
+	/**
+	 * Rolls back pending messages, if any. Already committed batches are kept.
+	 */
+	public void rollback() throws JMSException {
+		if (session != null && pendingMessages > 0) {
+			session.rollback();
+			pendingMessages = 0;
+			pendingBytes = 0;
+		}
+	}
+
+	/**
+	 * @return messages added since the last commit or rollback
+	 */
+	public int getPendingMessages() {
+		return pendingMessages;
+	}
+
+	public boolean isTransacted() {
+		return session != null;
+	}
+
+	public long getBatches() {
+		return batches;
+	}
+
+	/**
+	 * Approximate payload size in bytes. Properties and headers are not counted. Text counts as UTF-8. Map entries
+	 * count their names and values, object messages their serialized form.
+	 * @return the size, or -1 if it cannot be told, as for a write only bytes or stream message
+	 */
+	static long estimateSize(final Message msg) throws JMSException {
+		if (msg instanceof TextMessage) {
+			String text = ((TextMessage) msg).getText();
+			return text != null ? utf8Length(text) : 0;
+		} else if (msg instanceof BytesMessage) {
+			try {
+				return ((BytesMessage) msg).getBodyLength();
+			} catch (JMSException e) {
+				return -1;
+			}
+		} else if (msg instanceof MapMessage) {
+			MapMessage mapMsg = (MapMessage) msg;
+			long size = 0;
+			for (Enumeration<?> names = mapMsg.getMapNames(); names.hasMoreElements();) {
+				String name = (String) names.nextElement();
+				size += utf8Length(name) + sizeOf(mapMsg.getObject(name));
+			}
+			return size;
+		} else if (msg instanceof ObjectMessage) {
+			Serializable object = ((ObjectMessage) msg).getObject();
+			return object != null ? SerializationUtils.serialize(object).length : 0;
+		} else if (msg instanceof StreamMessage) {
+			StreamMessage streamMsg = (StreamMessage) msg;
+			long size = 0;
+			try {
+				while (true) {
+					size += sizeOf(streamMsg.readObject());
+				}
+			} catch (MessageEOFException e) {
+				streamMsg.reset();
+				return size;
+			} catch (JMSException e) {
+				return -1;
+			}
+		}
+		return 0;
+	}
+
+	private static long sizeOf(final Object value) {
+		if (value instanceof String) {
+			return utf8Length((String) value);
+		} else if (value instanceof byte[]) {
+			return ((byte[]) value).length;
+		} else if (value == null || value instanceof Boolean || value instanceof Byte) {
+			return 1;
+		} else if (value instanceof Short || value instanceof Character) {
+			return 2;
+		} else if (value instanceof Integer || value instanceof Float) {
+			return 4;
+		}
+		return 8;
+	}
+
+	// Bytes of the text encoded as UTF-8, without encoding it
+	static long utf8Length(final String text) {
+		long length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+}
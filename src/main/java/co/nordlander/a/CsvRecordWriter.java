@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+/**
+ * Writes each message as a CSV row, after a header row. Properties and map bodies are JSON objects in a cell,
+ * bytes bodies are base64 encoded. Cells are quoted as in RFC 4180 when needed, so a text body with line breaks
+ * spans several lines.
+ */
+public class CsvRecordWriter extends MessageRecordWriter {
+
+	private final StringBuilder row = new StringBuilder(1024);
+
+	public CsvRecordWriter(final AOutput output) throws IOException {
+		super(output);
+		for (String header : HEADERS) {
+			row.append(header).append(',');
+		}
+		output.output(row.append("properties,type,body").toString());
+		row.setLength(0);
+	}
+
+	@Override
+	protected void writeRecord(final Message msg) throws JMSException, IOException {
+		for (Object header : headers(msg)) {
+			if (header != null) {
+				appendCell(header.toString());
+			}
+			row.append(',');
+		}
+		writeProperties(msg);
+		appendCell(takeGenerated());
+		row.append(',').append(typeOf(msg)).append(',');
+		if (msg instanceof TextMessage) {
+			final String text = ((TextMessage) msg).getText();
+			if (text != null) {
+				appendCell(text);
+			}
+		} else if (msg instanceof BytesMessage) {
+			row.append(Base64.getEncoder().encodeToString(readBytes((BytesMessage) msg)));
+		} else if (msg instanceof MapMessage) {
+			writeMap((MapMessage) msg);
+			appendCell(takeGenerated());
+		}
+		output.output(row.toString());
+		row.setLength(0);
+	}
+
+	@Override
+	protected void reset() throws IOException {
+		super.reset();
+		row.setLength(0);
+	}
+
+	private void appendCell(final String value) {
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			final char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			row.append(value);
+			return;
+		}
+		row.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"') {
+				row.append('"');
+			}
+			row.append(c);
+		}
+		row.append('"');
+	}
+}
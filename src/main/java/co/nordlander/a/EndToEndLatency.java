@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Producer to consumer latency of received messages, in microseconds.
+ *
+ * The send time is the property set by put with --send-time, in epoch nanoseconds, or else JMSTimestamp in
+ * milliseconds. Either way the producer clock is compared to the consumer clock, so between hosts the latency
+ * includes the offset of the clocks. Each process reads the wall clock once and counts from there with
+ * System.nanoTime(), so adjustments of the clock during a run are not followed. Messages that seem to arrive before they were sent are counted as skewed.
+ * Not thread safe.
+ */
+public class EndToEndLatency {
+
+	public static final String SEND_TIME_PROPERTY = "ASendTimeNanos";
+	private static final long EPOCH_OFFSET_NANOS;
+
+	static {
+		final Instant now = Instant.now();
+		EPOCH_OFFSET_NANOS = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano() - System.nanoTime();
+	}
+
+	private final LatencyHistogram total = new LatencyHistogram();
+	private final LatencyHistogram interval = new LatencyHistogram();
+	private final long reportIntervalNanos;
+	private long nextReport;
+	private long skewed;
+	private long untimed;
+
+	/**
+	 * @param reportIntervalSeconds seconds between interval reports. 0 for none
+	 */
+	public EndToEndLatency(final long reportIntervalSeconds) {
+		reportIntervalNanos = TimeUnit.SECONDS.toNanos(reportIntervalSeconds);
+		nextReport = System.nanoTime() + reportIntervalNanos;
+	}
+
+	/**
+	 * Sets the send time property to now.
+	 */
+	public static void stamp(final Message msg) throws JMSException {
+		msg.setLongProperty(SEND_TIME_PROPERTY, epochNanos());
+	}
+
+	/**
+	 * Epoch time with the resolution of System.nanoTime(). The wall clock is read once, since Instant.now() only
+	 * has millisecond resolution on Java 8.
+	 */
+	static long epochNanos() {
+		return EPOCH_OFFSET_NANOS + System.nanoTime();
+	}
+
+	public void record(final Message msg) throws JMSException {
+		final long latencyMicros;
+		if (msg.propertyExists(SEND_TIME_PROPERTY)) {
+			latencyMicros = TimeUnit.NANOSECONDS.toMicros(epochNanos() - msg.getLongProperty(SEND_TIME_PROPERTY));
+		} else if (msg.getJMSTimestamp() > 0) {
+			latencyMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis() - msg.getJMSTimestamp());
+		} else {
+			untimed++;
+			return;
+		}
+		if (latencyMicros < 0) {
+			skewed++;
+		}
+		total.record(latencyMicros);
+		interval.record(latencyMicros);
+	}
+
+	/**
+	 * @return true if an interval report is due. The interval is reset by {@link #resetInterval()}.
+	 */
+	public boolean isReportDue() {
+		return reportIntervalNanos > 0 && System.nanoTime() >= nextReport;
+	}
+
+	public void resetInterval() {
+		interval.reset();
+		nextReport = System.nanoTime() + reportIntervalNanos;
+	}
+
+	public LatencyHistogram getInterval() {
+		return interval;
+	}
+
+	public LatencyHistogram getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return messages with a send time after the receive time, recorded as zero latency.
+	 */
+	public long getSkewed() {
+		return skewed;
+	}
+
+	/**
+	 * @return messages without a send time or JMSTimestamp, which are not recorded.
+	 */
+	public long getUntimed() {
+		return untimed;
+	}
+}
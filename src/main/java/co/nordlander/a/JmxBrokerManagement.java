@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Broker side operations of ActiveMQ 5, through the QueueViewMBean over JMX.
+ */
+public class JmxBrokerManagement implements BrokerManagement {
+
+	private static final String DOMAIN = "org.apache.activemq";
+	private static final String STRING = String.class.getName();
+	private static final String INT = int.class.getName();
+
+	private final JMXConnector connector;
+	private final MBeanServerConnection mbeans;
+
+	/**
+	 * @param url JMX service URL, i.e. service:jmx:rmi:///jndi/rmi://localhost:1099/jmxrmi
+	 * @param user JMX user, or null
+	 */
+	public JmxBrokerManagement(final String url, final String user, final String password) throws IOException {
+		Map<String, Object> env = new HashMap<>();
+		if (user != null) {
+			env.put(JMXConnector.CREDENTIALS, new String[] {user, password});
+		}
+		connector = JMXConnectorFactory.connect(new JMXServiceURL(url), env);
+		mbeans = connector.getMBeanServerConnection();
+	}
+
+	@Override
+	public long move(final String source, final String target, final String selector, final int count)
+			throws IOException {
+		return count > 0
+				? (Integer) invoke(source, "moveMatchingMessagesTo", new Object[] {selector, target, count},
+						new String[] {STRING, STRING, INT})
+				: (Integer) invoke(source, "moveMatchingMessagesTo", new Object[] {selector, target},
+						new String[] {STRING, STRING});
+	}
+
+	@Override
+	public long copy(final String source, final String target, final String selector, final int count)
+			throws IOException {
+		return count > 0
+				? (Integer) invoke(source, "copyMatchingMessagesTo", new Object[] {selector, target, count},
+						new String[] {STRING, STRING, INT})
+				: (Integer) invoke(source, "copyMatchingMessagesTo", new Object[] {selector, target},
+						new String[] {STRING, STRING});
+	}
+
+	@Override
+	public long purge(final String queue, final String selector, final int count) throws IOException {
+		return count > 0
+				? (Integer) invoke(queue, "removeMatchingMessages", new Object[] {selector, count},
+						new String[] {STRING, INT})
+				: (Integer) invoke(queue, "removeMatchingMessages", new Object[] {selector}, new String[] {STRING});
+	}
+
+	private Object invoke(final String queue, final String operation, final Object[] params, final String[] signature)
+			throws IOException {
+		try {
+			return mbeans.invoke(findQueue(queue), operation, params, signature);
+		} catch (JMException e) {
+			throw new IOException(operation + " failed on queue " + queue + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Finds the queue by name. Names with characters that ActiveMQ escapes in object names are found by scanning
+	 * all queues.
+	 */
+	protected ObjectName findQueue(final String queue) throws IOException, JMException {
+		try {
+			Set<ObjectName> names = mbeans.queryNames(new ObjectName(DOMAIN
+					+ ":type=Broker,brokerName=*,destinationType=Queue,destinationName=" + queue), null);
+			if (!names.isEmpty()) {
+				return names.iterator().next();
+			}
+		} catch (MalformedObjectNameException e) {
+			// Scan instead
+		}
+		for (ObjectName name : mbeans.queryNames(
+				new ObjectName(DOMAIN + ":type=Broker,brokerName=*,destinationType=Queue,*"), null)) {
+			if (name.getKeyProperty("endpoint") == null && queue.equals(mbeans.getAttribute(name, "Name"))) {
+				return name;
+			}
+		}
+		throw new IOException("Queue " + queue + " not found over JMX");
+	}
+
+	@Override
+	public void close() throws IOException {
+		connector.close();
+	}
+}
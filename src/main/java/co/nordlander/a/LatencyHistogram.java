@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.Arrays;
+
+/**
+ * A log-linear latency histogram in the spirit of HdrHistogram.
+ * Values below 128 are counted exactly, larger values are counted in 64 buckets
+ * per power of two, which gives a relative error below 1.6%.
+ * Recording is a couple of shifts and an array increment, so it is cheap enough for every message.
+ * Not thread safe. Use one histogram per thread and merge them.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS + SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long min = Long.MAX_VALUE;
+	private long max;
+	private double sum;
+
+	/**
+	 * Records a value. Negative values are recorded as zero.
+	 */
+	public void record(final long value) {
+		final long v = value < 0 ? 0 : value;
+		counts[indexOf(v)]++;
+		count++;
+		sum += v;
+		if (v < min) {
+			min = v;
+		}
+		if (v > max) {
+			max = v;
+		}
+	}
+
+	public void merge(final LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0L);
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMin() {
+		return count > 0 ? min : 0;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count > 0 ? sum / count : 0.0;
+	}
+
+	/**
+	 * @param percentile 0 - 100, i.e. 99.9
+	 * @return the highest value equivalent to the bucket at the percentile, capped by the max recorded value.
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestEquivalentValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return i.e. "n=100 p50=12 p99=40 p99.9=41 max=41" followed by the unit.
+	 */
+	public String summary(final String unit) {
+		return "n=" + count
+				+ " p50=" + getValueAtPercentile(50.0) + unit
+				+ " p99=" + getValueAtPercentile(99.0) + unit
+				+ " p99.9=" + getValueAtPercentile(99.9) + unit
+				+ " max=" + getMax() + unit;
+	}
+
+	static int indexOf(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return exponent * HALF_SUB_BUCKETS + (int) (value >>> exponent);
+	}
+
+	static long highestEquivalentValue(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int exponent = index / HALF_SUB_BUCKETS - 1;
+		final long subBucket = index - exponent * HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << exponent) - 1;
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+
+/**
+ * Loads large files into messages through a memory mapping.
+ * Bytes are written to the message in chunks, so the file content is never held in a heap array of its own, only
+ * in the message, which roughly halves the peak heap compared to reading the whole file first. Text is decoded
+ * straight from the mapping.
+ * Not thread safe, since the chunk buffer and decoder are reused.
+ */
+public class MappedFileLoader {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	// Some VMs reserve header words in an array
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private final byte[] chunk;
+	private CharsetDecoder decoder;
+
+	public MappedFileLoader() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public MappedFileLoader(final int chunkSize) {
+		chunk = new byte[chunkSize];
+	}
+
+	/**
+	 * Writes the content of a file to a bytes message.
+	 */
+	public void writeTo(final File file, final BytesMessage msg) throws IOException, JMSException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			for (long position = 0; position < size; ) {
+				final long regionSize = Math.min(size - position, Integer.MAX_VALUE);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+				while (region.hasRemaining()) {
+					final int n = Math.min(chunk.length, region.remaining());
+					region.get(chunk, 0, n);
+					msg.writeBytes(chunk, 0, n);
+				}
+				position += regionSize;
+			}
+		}
+	}
+
+	/**
+	 * Decodes a file to a string. Malformed input is replaced, like new String(bytes, charset) does.
+	 * The text is decoded into one array, sized from the file, which the string is built from.
+	 */
+	public String readText(final File file, final Charset charset) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File " + file + " is too large for a text message: " + size + " bytes");
+			}
+			final CharsetDecoder dec = decoderFor(charset);
+			final ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			CharBuffer text = CharBuffer.allocate(capacity(size, dec.maxCharsPerByte()));
+			CoderResult result;
+			while ((result = dec.decode(in, text, true)).isOverflow()) {
+				text = grow(text);
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			while ((result = dec.flush(text)).isOverflow()) {
+				text = grow(text);
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			return new String(text.array(), 0, text.position());
+		}
+	}
+
+	private CharsetDecoder decoderFor(final Charset charset) {
+		if (decoder == null || !decoder.charset().equals(charset)) {
+			decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		return decoder.reset();
+	}
+
+	// Enough for any input, except for charsets that do not know their maximum
+	private static int capacity(final long bytes, final float maxCharsPerByte) {
+		return (int) Math.min(MAX_ARRAY_SIZE, (long) Math.ceil(bytes * (double) maxCharsPerByte) + 1);
+	}
+
+	private static CharBuffer grow(final CharBuffer text) throws IOException {
+		if (text.capacity() >= MAX_ARRAY_SIZE) {
+			throw new IOException("Text is too large for a text message");
+		}
+		final CharBuffer larger = CharBuffer.allocate((int) Math.min(MAX_ARRAY_SIZE, text.capacity() * 2L));
+		text.flip();
+		return larger.put(text);
+	}
+}
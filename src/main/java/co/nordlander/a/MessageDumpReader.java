@@ -83,6 +83,7 @@ public class MessageDumpReader {
 			BytesMessage bm = session.createBytesMessage();
 			byte[] messageBytes = Base64.decodeBase64(dump.body);
 			bm.writeBytes(messageBytes);
+			bm.reset();
 			msg = bm;
 		} else if ("ObjectMessage".equals(dump.type)) {
 			byte[] objectBytes = Base64.decodeBase64(dump.body);
@@ -28,6 +28,10 @@ import javax.script.*;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+
+import com.oracle.truffle.js.scriptengine.GraalJSScriptEngine;
 
 /**
  * Transforms a MessageDump (before save or load) using JavaScript.
@@ -43,9 +47,32 @@ public class MessageDumpTransformer {
 	protected Bindings bindings;
 	protected Map<String, Object> context = new TreeMap<>();
 
+	protected String scriptSource;
+	protected String script;
+
 	public MessageDumpTransformer(){
 		mgr = new ScriptEngineManager();
-		engine = mgr.getEngineByName("js");
+		init(mgr.getEngineByName("js"));
+	}
+
+	/**
+	 * Creates a transformer with a script context of its own, on a GraalVM engine shared with other transformers.
+	 * Each transformer may be used by one thread, while code compiled by the engine is shared by all of them.
+	 * The context is initialized here, on the calling thread, since contexts that are initialized concurrently on
+	 * a shared engine may fail. Create the transformers one at a time, before handing them to their threads.
+	 * @param sharedEngine the engine. Closed by the caller when all transformers are done.
+	 */
+	public MessageDumpTransformer(final Engine sharedEngine) {
+		init(GraalJSScriptEngine.create(sharedEngine, Context.newBuilder("js")));
+		try {
+			engine.eval("");
+		} catch (ScriptException e) {
+			throw new IllegalStateException("Failed to initialize script context", e);
+		}
+	}
+
+	private void init(final ScriptEngine scriptEngine) {
+		engine = scriptEngine;
 		bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
 		bindings.put("polyglot.js.nashorn-compat", true);
 		bindings.put("polyglot.js.allowHostAccess", true);
@@ -73,7 +100,12 @@ public class MessageDumpTransformer {
 	
 	protected String toScript(final String script) throws IOException {
 		if (script.startsWith("@")) {
-			return FileUtils.readFileToString(new File(script.substring(1)), StandardCharsets.UTF_8);
+			// Avoid reading the file again for every message
+			if (!script.equals(scriptSource)) {
+				this.script = FileUtils.readFileToString(new File(script.substring(1)), StandardCharsets.UTF_8);
+				scriptSource = script;
+			}
+			return this.script;
 		} else {
 			return script;
 		}
@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.IOException;
+import java.util.Enumeration;
+
+import javax.jms.BytesMessage;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import javax.jms.StreamMessage;
+import javax.jms.TextMessage;
+
+import org.apache.commons.io.output.StringBuilderWriter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes messages as machine readable records, one per line, with headers, typed properties and the body.
+ * JSON is written with the streaming generator of Jackson, without building a tree per message, to a buffer that is
+ * reused for each record. Each record is then output as one line.
+ * Thread safe.
+ */
+public abstract class MessageRecordWriter {
+
+	public static final String FORMAT_TEXT = "text";
+	public static final String FORMAT_NDJSON = "ndjson";
+	public static final String FORMAT_CSV = "csv";
+
+	protected static final String[] HEADERS = {"JMSMessageID", "JMSTimestamp", "JMSCorrelationID", "JMSDeliveryMode",
+			"JMSPriority", "JMSExpiration", "JMSType", "JMSDestination", "JMSRedelivered", "JMSReplyTo"};
+
+	protected final AOutput output;
+	protected JsonGenerator json;
+	private final JsonFactory factory = new JsonFactory().setRootValueSeparator(null);
+	private final StringBuilderWriter buffer = new StringBuilderWriter(1024);
+
+	protected MessageRecordWriter(final AOutput output) throws IOException {
+		this.output = output;
+		json = factory.createGenerator(buffer);
+	}
+
+	/**
+	 * @param format {@link #FORMAT_NDJSON} or {@link #FORMAT_CSV}
+	 */
+	public static MessageRecordWriter create(final String format, final AOutput output) throws IOException {
+		switch (format) {
+		case FORMAT_NDJSON:
+			return new NdjsonRecordWriter(output);
+		case FORMAT_CSV:
+			return new CsvRecordWriter(output);
+		default:
+			throw new IllegalArgumentException("Unknown format " + format + ". Use " + FORMAT_TEXT + ", "
+					+ FORMAT_NDJSON + " or " + FORMAT_CSV);
+		}
+	}
+
+	/**
+	 * Writes a record. If it fails half way, nothing of it is kept for the next record.
+	 */
+	public synchronized void write(final Message msg) throws JMSException, IOException {
+		boolean written = false;
+		try {
+			writeRecord(msg);
+			written = true;
+		} finally {
+			if (!written) {
+				reset();
+			}
+		}
+	}
+
+	protected abstract void writeRecord(Message msg) throws JMSException, IOException;
+
+	/**
+	 * Discards a partly generated record. The generator is replaced, since it may be left inside an object.
+	 */
+	protected void reset() throws IOException {
+		buffer.getBuilder().setLength(0);
+		json = factory.createGenerator(buffer);
+	}
+
+	/**
+	 * @return what was generated since the last call
+	 */
+	protected String takeGenerated() throws IOException {
+		json.flush();
+		final String generated = buffer.toString();
+		buffer.getBuilder().setLength(0);
+		return generated;
+	}
+
+	/**
+	 * @return the values of {@link #HEADERS}
+	 */
+	protected static Object[] headers(final Message msg) throws JMSException {
+		return new Object[] {msg.getJMSMessageID(), msg.getJMSTimestamp(), msg.getJMSCorrelationID(),
+				msg.getJMSDeliveryMode() == DeliveryMode.PERSISTENT ? "persistent" : "non-persistent",
+				msg.getJMSPriority(), msg.getJMSExpiration(), msg.getJMSType(), name(msg.getJMSDestination()),
+				msg.getJMSRedelivered(), name(msg.getJMSReplyTo())};
+	}
+
+	private static String name(final Destination destination) {
+		return destination != null ? destination.toString() : null;
+	}
+
+	/**
+	 * @return the message type, named like in dumps
+	 */
+	public static String typeOf(final Message msg) {
+		if (msg instanceof TextMessage) {
+			return "TextMessage";
+		} else if (msg instanceof BytesMessage) {
+			return "BytesMessage";
+		} else if (msg instanceof MapMessage) {
+			return "MapMessage";
+		} else if (msg instanceof ObjectMessage) {
+			return "ObjectMessage";
+		} else if (msg instanceof StreamMessage) {
+			return "StreamMessage";
+		}
+		return "Message";
+	}
+
+	/**
+	 * Reads the body of a bytes message. The message is reset, so that it can be read again.
+	 */
+	protected static byte[] readBytes(final BytesMessage msg) throws JMSException {
+		msg.reset();
+		final byte[] bytes = new byte[(int) msg.getBodyLength()];
+		msg.readBytes(bytes);
+		msg.reset();
+		return bytes;
+	}
+
+	/**
+	 * Generates the properties as a JSON object, with numbers and booleans as such.
+	 */
+	protected void writeProperties(final Message msg) throws JMSException, IOException {
+		json.writeStartObject();
+		@SuppressWarnings("unchecked")
+		final Enumeration<String> names = msg.getPropertyNames();
+		while (names.hasMoreElements()) {
+			final String name = names.nextElement();
+			json.writeFieldName(name);
+			writeValue(msg.getObjectProperty(name));
+		}
+		json.writeEndObject();
+	}
+
+	/**
+	 * Generates the entries of a map message as a JSON object. Bytes are base64 encoded.
+	 */
+	protected void writeMap(final MapMessage msg) throws JMSException, IOException {
+		json.writeStartObject();
+		@SuppressWarnings("unchecked")
+		final Enumeration<String> names = msg.getMapNames();
+		while (names.hasMoreElements()) {
+			final String name = names.nextElement();
+			json.writeFieldName(name);
+			writeValue(msg.getObject(name));
+		}
+		json.writeEndObject();
+	}
+
+	protected void writeValue(final Object value) throws IOException {
+		if (value == null) {
+			json.writeNull();
+		} else if (value instanceof Boolean) {
+			json.writeBoolean((Boolean) value);
+		} else if (value instanceof Float || value instanceof Double) {
+			json.writeNumber(((Number) value).doubleValue());
+		} else if (value instanceof Number) {
+			json.writeNumber(((Number) value).longValue());
+		} else if (value instanceof byte[]) {
+			json.writeBinary((byte[]) value);
+		} else {
+			json.writeString(value.toString());
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append only journal of a move, so that a move that was interrupted can be resumed without duplicates.
+ *
+ * Each sent message is written as "S id" when it is sent outside a transaction, or "T id" inside one.
+ * "C" is written once the messages before it are acknowledged or committed on the source.
+ * Messages sent outside a transaction but not yet acknowledged are in doubt: the source redelivers them,
+ * although they already are on the target. Those are not sent again when resuming. Messages of a transaction
+ * that was not committed are sent again, since the broker rolled back their sends along with the receives.
+ *
+ * Records are flushed to the operating system as they are written, which survives a crash of A but not of the host.
+ * Not thread safe.
+ */
+public class MoveJournal implements Closeable {
+
+	private static final String SENT = "S ";
+	private static final String SENT_IN_TRANSACTION = "T ";
+	private static final String CHECKPOINT = "C";
+
+	private final Set<String> inDoubt = new HashSet<>();
+	private final List<String> pending = new ArrayList<>();
+	private final Writer writer;
+	private long moved;
+	private long resumedInDoubt;
+
+	public MoveJournal(final File file) throws IOException {
+		if (file.exists()) {
+			load(file);
+		}
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+	}
+
+	private void load(final File file) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			int sentInBatch = 0;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(SENT)) {
+					pending.add(line.substring(SENT.length()));
+					sentInBatch++;
+				} else if (line.startsWith(SENT_IN_TRANSACTION)) {
+					sentInBatch++;
+				} else if (line.equals(CHECKPOINT)) {
+					moved += sentInBatch;
+					sentInBatch = 0;
+					pending.clear();
+				}
+			}
+			inDoubt.addAll(pending);
+			resumedInDoubt = inDoubt.size();
+			pending.clear();
+		}
+	}
+
+	/**
+	 * @return true if the message was sent in an earlier run, but not acknowledged on the source
+	 */
+	public boolean isInDoubt(final String messageId) {
+		return inDoubt.contains(messageId);
+	}
+
+	/**
+	 * Records a message as sent. Write it before the message is acknowledged or committed on the source.
+	 */
+	public void sent(final String messageId, final boolean transacted) throws IOException {
+		writer.write(transacted ? SENT_IN_TRANSACTION : SENT);
+		writer.write(messageId);
+		writer.write('\n');
+		writer.flush();
+		pending.add(messageId);
+	}
+
+	/**
+	 * Records that a message in doubt was redelivered and not sent again. Its record from the earlier run is kept.
+	 */
+	public void skipped(final String messageId) {
+		pending.add(messageId);
+	}
+
+	/**
+	 * Records that all messages sent so far are acknowledged or committed on the source.
+	 */
+	public void checkpoint() throws IOException {
+		if (pending.isEmpty()) {
+			return;
+		}
+		writer.write(CHECKPOINT);
+		writer.write('\n');
+		writer.flush();
+		moved += pending.size();
+		for (String id : pending) {
+			inDoubt.remove(id);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * @return messages moved by this and earlier runs
+	 */
+	public long getMoved() {
+		return moved;
+	}
+
+	/**
+	 * @return messages that were in doubt when the journal was opened
+	 */
+	public long getResumedInDoubt() {
+		return resumedInDoubt;
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
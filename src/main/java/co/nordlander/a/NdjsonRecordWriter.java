@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.IOException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+/**
+ * Writes each message as a JSON object on a line of its own, i.e. for jq. Bytes bodies are base64 encoded,
+ * map bodies are objects and other bodies are null.
+ */
+public class NdjsonRecordWriter extends MessageRecordWriter {
+
+	public NdjsonRecordWriter(final AOutput output) throws IOException {
+		super(output);
+	}
+
+	@Override
+	protected void writeRecord(final Message msg) throws JMSException, IOException {
+		json.writeStartObject();
+		final Object[] headers = headers(msg);
+		for (int i = 0; i < HEADERS.length; i++) {
+			json.writeFieldName(HEADERS[i]);
+			writeValue(headers[i]);
+		}
+		json.writeFieldName("properties");
+		writeProperties(msg);
+		json.writeStringField("type", typeOf(msg));
+		json.writeFieldName("body");
+		if (msg instanceof TextMessage) {
+			json.writeString(((TextMessage) msg).getText());
+		} else if (msg instanceof BytesMessage) {
+			json.writeBinary(readBytes((BytesMessage) msg));
+		} else if (msg instanceof MapMessage) {
+			writeMap((MapMessage) msg);
+		} else {
+			json.writeNull();
+		}
+		json.writeEndObject();
+		output.output(takeGenerated());
+	}
+}
@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+
+/**
+ * Browses queues deeper than the browse page of the broker, i.e. maxBrowsePageSize of ActiveMQ 5.
+ *
+ * If a plain browse returns a full page, the queue is browsed again in windows, with selectors on JMSTimestamp
+ * ranges. A window that also returns a full page is split in two, down to a single millisecond and then by
+ * JMSPriority. Windows are browsed in parallel, each with a browser of its own, and handed over in timestamp order.
+ * JMS selectors cannot compare strings by range, so messages are not partitioned by JMSMessageID.
+ */
+public class PagedBrowser {
+
+	/**
+	 * Handles each browsed message, in order.
+	 */
+	public interface MessageHandler {
+		void handle(Message msg) throws Exception;
+	}
+
+	private static final int PRIORITIES = 10;
+
+	private final Connection connection;
+	private final String queue;
+	private final String selector;
+	private final int pageSize;
+	private final int browsers;
+	private final BlockingQueue<Session> sessions;
+	private long truncated;
+
+	/**
+	 * @param connection a started connection to create browse sessions with
+	 * @param selector selector of the messages to browse, or null
+	 * @param pageSize the number of messages the broker returns to a browser at most
+	 * @param browsers number of browsers to run in parallel
+	 */
+	public PagedBrowser(final Connection connection, final String queue, final String selector, final int pageSize,
+			final int browsers) {
+		this.connection = connection;
+		this.queue = queue;
+		this.selector = selector;
+		this.pageSize = pageSize;
+		this.browsers = browsers;
+		this.sessions = new ArrayBlockingQueue<>(browsers);
+	}
+
+	/**
+	 * Browses the queue.
+	 * @param count stop after this many messages. 0 means no limit
+	 * @return the number of messages handled
+	 */
+	public long browse(final MessageHandler handler, final int count) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(browsers);
+		try {
+			for (int i = 0; i < browsers; i++) {
+				sessions.add(connection.createSession(false, Session.AUTO_ACKNOWLEDGE));
+			}
+			List<Message> firstPage = browseWindow(null);
+			if (firstPage.size() < pageSize) {
+				return handle(firstPage, handler, count, 0);
+			}
+			long oldest = Long.MAX_VALUE;
+			long newest = System.currentTimeMillis();
+			for (Message msg : firstPage) {
+				oldest = Math.min(oldest, msg.getJMSTimestamp());
+				newest = Math.max(newest, msg.getJMSTimestamp());
+			}
+			final Deque<Window> windows = new ArrayDeque<>();
+			windows.add(new Window(0, oldest, -1));
+			final long width = Math.max(1, (newest + 1 - oldest) / (browsers * 2));
+			for (long lo = oldest; lo <= newest; lo += width) {
+				windows.add(new Window(lo, Math.min(lo + width, newest + 1), -1));
+			}
+			windows.add(new Window(newest + 1, Long.MAX_VALUE, -1));
+			for (Window window : windows) {
+				window.submit(executor);
+			}
+
+			long handled = 0;
+			while (!windows.isEmpty() && (handled < count || count == 0)) {
+				final Window window = windows.removeFirst();
+				final List<Message> page = window.await();
+				final List<Window> parts = page.size() >= pageSize ? window.split() : Collections.emptyList();
+				if (parts.isEmpty()) {
+					if (page.size() >= pageSize) {
+						truncated++;
+					}
+					handled = handle(page, handler, count, handled);
+				} else {
+					for (int i = parts.size() - 1; i >= 0; i--) {
+						parts.get(i).submit(executor);
+						windows.addFirst(parts.get(i));
+					}
+				}
+			}
+			return handled;
+		} finally {
+			executor.shutdownNow();
+			for (Session session : sessions) {
+				session.close();
+			}
+		}
+	}
+
+	/**
+	 * @return windows that still had a full page after they were split as far as possible, so that messages may
+	 *         be missing from them
+	 */
+	public long getTruncated() {
+		return truncated;
+	}
+
+	private static long handle(final List<Message> page, final MessageHandler handler, final int count, long handled)
+			throws Exception {
+		for (Message msg : page) {
+			if (count > 0 && handled >= count) {
+				break;
+			}
+			handler.handle(msg);
+			handled++;
+		}
+		return handled;
+	}
+
+	protected List<Message> browseWindow(final String windowSelector) throws JMSException, InterruptedException {
+		final Session session = sessions.take();
+		try {
+			final Queue q = session.createQueue(queue);
+			String fullSelector = selector;
+			if (windowSelector != null) {
+				fullSelector = selector != null ? "(" + selector + ") AND " + windowSelector : windowSelector;
+			}
+			final QueueBrowser qb = fullSelector != null ? session.createBrowser(q, fullSelector)
+					: session.createBrowser(q);
+			try {
+				final List<Message> page = new ArrayList<>();
+				@SuppressWarnings("unchecked")
+				final Enumeration<Message> en = qb.getEnumeration();
+				while (en.hasMoreElements()) {
+					page.add(en.nextElement());
+				}
+				return page;
+			} finally {
+				qb.close();
+			}
+		} finally {
+			sessions.add(session);
+		}
+	}
+
+	/**
+	 * Messages with JMSTimestamp from lo, inclusive, to hi, exclusive. With a priority, only messages of that priority.
+	 */
+	private class Window {
+		final long lo;
+		final long hi;
+		final int priority;
+		Future<List<Message>> result;
+
+		Window(final long lo, final long hi, final int priority) {
+			this.lo = lo;
+			this.hi = hi;
+			this.priority = priority;
+		}
+
+		void submit(final ExecutorService executor) {
+			result = executor.submit(() -> browseWindow(toSelector()));
+		}
+
+		List<Message> await() throws JMSException, InterruptedException {
+			try {
+				return result.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof JMSException) {
+					throw (JMSException) e.getCause();
+				}
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		String toSelector() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("JMSTimestamp >= ").append(lo);
+			if (hi != Long.MAX_VALUE) {
+				sb.append(" AND JMSTimestamp < ").append(hi);
+			}
+			if (priority >= 0) {
+				sb.append(" AND JMSPriority = ").append(priority);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * @return smaller windows that cover this one, or none if it cannot be split
+		 */
+		List<Window> split() {
+			List<Window> parts = new ArrayList<>();
+			if (hi - lo > 1 && hi != Long.MAX_VALUE) {
+				final long mid = lo + (hi - lo) / 2;
+				parts.add(new Window(lo, mid, priority));
+				parts.add(new Window(mid, hi, priority));
+			} else if (priority < 0) {
+				for (int p = PRIORITIES - 1; p >= 0; p--) {
+					parts.add(new Window(lo, hi, p));
+				}
+			}
+			return parts;
+		}
+	}
+}
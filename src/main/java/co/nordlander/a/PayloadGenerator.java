@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates synthetic payloads from a spec, i.e. "random:1024" or "template:id=${seq}".
+ *
+ * Random payloads are slices of a buffer that is filled once, at a random offset and with a size drawn from
+ * a distribution, so generating a payload costs no more than copying it into the message.
+ * Thread safe, so producers can share one generator. The sequence number is shared as well.
+ */
+public class PayloadGenerator {
+
+	public static final String PREFIX = "gen:";
+
+	private static final String RANDOM = "random:";
+	private static final String TEMPLATE = "template:";
+	private static final byte[] ALPHANUMERIC =
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".getBytes(StandardCharsets.US_ASCII);
+	private static final Pattern UNIFORM = Pattern.compile("uniform\\((\\d+),(\\d+)\\)");
+	private static final Pattern NORMAL = Pattern.compile("normal\\((\\d+),(\\d+)\\)");
+	private static final Pattern VARIABLE = Pattern.compile("\\$\\{(seq|timestamp)\\}");
+
+	private final Charset charset;
+	private final AtomicLong sequence = new AtomicLong();
+	private byte[] pool;
+	private IntSupplier sizes;
+	private int maxSize;
+	// Template parts. Literal strings, with variable names in every other position.
+	private String[] parts;
+
+	/**
+	 * @param spec the spec, with or without the "gen:" prefix
+	 * @param text true to generate alphanumeric text, false for arbitrary bytes
+	 * @param charset encoding of templates in bytes messages
+	 */
+	public PayloadGenerator(final String spec, final boolean text, final Charset charset) throws IOException {
+		this.charset = charset;
+		final String body = spec.startsWith(PREFIX) ? spec.substring(PREFIX.length()) : spec;
+		if (body.startsWith(RANDOM)) {
+			sizes = parseSizes(body.substring(RANDOM.length()));
+			pool = createPool(maxSize + Math.min(maxSize, 65536) + 1, text);
+		} else if (body.startsWith(TEMPLATE)) {
+			parts = parseTemplate(body.substring(TEMPLATE.length()));
+		} else {
+			throw new IllegalArgumentException("Unknown payload generator: " + spec
+					+ ". Expected " + PREFIX + RANDOM + "<size> or " + PREFIX + TEMPLATE + "<template>");
+		}
+	}
+
+	/**
+	 * Sets the body of a text or bytes message to the next payload.
+	 */
+	public void fill(final Message msg) throws JMSException {
+		if (msg instanceof TextMessage) {
+			((TextMessage) msg).setText(nextText());
+		} else if (msg instanceof BytesMessage) {
+			BytesMessage bytesMsg = (BytesMessage) msg;
+			bytesMsg.clearBody();
+			if (parts != null) {
+				bytesMsg.writeBytes(render().getBytes(charset));
+			} else {
+				final int size = nextSize();
+				bytesMsg.writeBytes(pool, ThreadLocalRandom.current().nextInt(pool.length - size), size);
+			}
+			bytesMsg.reset();
+		} else {
+			throw new IllegalArgumentException("Generated payloads need a text or bytes message");
+		}
+	}
+
+	public String nextText() {
+		if (parts != null) {
+			return render();
+		}
+		final int size = nextSize();
+		// The pool is ASCII, which makes this a plain copy
+		return new String(pool, ThreadLocalRandom.current().nextInt(pool.length - size), size,
+				StandardCharsets.ISO_8859_1);
+	}
+
+	int nextSize() {
+		return sizes.getAsInt();
+	}
+
+	int getMaxSize() {
+		return maxSize;
+	}
+
+	private String render() {
+		final StringBuilder sb = new StringBuilder(64);
+		for (int i = 0; i < parts.length; i++) {
+			if (i % 2 == 0) {
+				sb.append(parts[i]);
+			} else if ("seq".equals(parts[i])) {
+				sb.append(sequence.incrementAndGet());
+			} else {
+				sb.append(System.currentTimeMillis());
+			}
+		}
+		return sb.toString();
+	}
+
+	private IntSupplier parseSizes(final String spec) throws IOException {
+		Matcher uniform = UNIFORM.matcher(spec);
+		Matcher normal = NORMAL.matcher(spec);
+		if (uniform.matches()) {
+			final int min = Integer.parseInt(uniform.group(1));
+			final int max = Integer.parseInt(uniform.group(2));
+			if (min > max) {
+				throw new IllegalArgumentException("Min size above max size: " + spec);
+			}
+			maxSize = max;
+			return () -> ThreadLocalRandom.current().nextInt(min, max + 1);
+		} else if (normal.matches()) {
+			final int mean = Integer.parseInt(normal.group(1));
+			final int stddev = Integer.parseInt(normal.group(2));
+			// Cut the tail, so that the pool stays reasonably small
+			final int max = (int) Math.min(Integer.MAX_VALUE / 2, (long) mean + 6L * stddev);
+			maxSize = max;
+			return () -> (int) Math.max(0, Math.min(max,
+					Math.round(mean + ThreadLocalRandom.current().nextGaussian() * stddev)));
+		} else if (spec.startsWith("@")) {
+			return parseHistogram(new File(spec.substring(1)));
+		} else {
+			final int size = Integer.parseInt(spec);
+			maxSize = size;
+			return () -> size;
+		}
+	}
+
+	/**
+	 * Reads a histogram file with one "size weight" pair per line. The weight defaults to 1.
+	 */
+	private IntSupplier parseHistogram(final File file) throws IOException {
+		List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+		final int[] values = new int[lines.size()];
+		final long[] cumulative = new long[lines.size()];
+		int n = 0;
+		long total = 0;
+		for (String line : lines) {
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+				continue;
+			}
+			String[] fields = trimmed.split("[\\s,;]+");
+			values[n] = Integer.parseInt(fields[0]);
+			total += fields.length > 1 ? Long.parseLong(fields[1]) : 1;
+			cumulative[n] = total;
+			maxSize = Math.max(maxSize, values[n]);
+			n++;
+		}
+		if (total <= 0) {
+			throw new IllegalArgumentException("No sizes in histogram file " + file);
+		}
+		final int buckets = n;
+		final long weights = total;
+		return () -> {
+			int i = Arrays.binarySearch(cumulative, 0, buckets, ThreadLocalRandom.current().nextLong(weights) + 1);
+			return values[i >= 0 ? i : -i - 1];
+		};
+	}
+
+	private static String[] parseTemplate(final String template) {
+		List<String> parts = new ArrayList<>();
+		Matcher m = VARIABLE.matcher(template);
+		int start = 0;
+		while (m.find()) {
+			parts.add(template.substring(start, m.start()));
+			parts.add(m.group(1));
+			start = m.end();
+		}
+		parts.add(template.substring(start));
+		return parts.toArray(new String[0]);
+	}
+
+	private static byte[] createPool(final int size, final boolean text) {
+		byte[] pool = new byte[size];
+		Random random = new Random();
+		random.nextBytes(pool);
+		if (text) {
+			for (int i = 0; i < size; i++) {
+				pool[i] = ALPHANUMERIC[(pool[i] & 0xff) % ALPHANUMERIC.length];
+			}
+		}
+		return pool;
+	}
+}
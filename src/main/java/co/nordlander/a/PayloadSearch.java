@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+/**
+ * Searches messages for several values and regular expressions at once. Values are found in one pass with an
+ * {@link AhoCorasick} automaton, over chars in text and over encoded bytes in bytes messages, which are not decoded.
+ * The body of text, bytes and map messages is searched, as are the values of properties.
+ * Immutable and thread safe, but a bytes message must not be read by another thread during the search.
+ */
+public class PayloadSearch {
+
+	private final List<String> values;
+	private final List<Pattern> patterns;
+	private final Charset charset;
+	private final AhoCorasick textAutomaton;
+	private final AhoCorasick bytesAutomaton;
+
+	/**
+	 * @param values values to search for
+	 * @param regexes regular expressions to search for
+	 * @param charset encoding of values in bytes messages, also used to decode bytes messages for the regexes
+	 */
+	public PayloadSearch(final List<String> values, final List<String> regexes, final Charset charset) {
+		this.values = new ArrayList<>(values);
+		this.patterns = new ArrayList<>(regexes.size());
+		for (String regex : regexes) {
+			patterns.add(Pattern.compile(regex));
+		}
+		this.charset = charset;
+		final int[][] textPatterns = new int[values.size()][];
+		final int[][] bytesPatterns = new int[values.size()][];
+		for (int i = 0; i < values.size(); i++) {
+			final String value = values.get(i);
+			textPatterns[i] = new int[value.length()];
+			for (int j = 0; j < value.length(); j++) {
+				textPatterns[i][j] = value.charAt(j);
+			}
+			final byte[] bytes = value.getBytes(charset);
+			bytesPatterns[i] = new int[bytes.length];
+			for (int j = 0; j < bytes.length; j++) {
+				bytesPatterns[i][j] = bytes[j] & 0xFF;
+			}
+		}
+		textAutomaton = new AhoCorasick(textPatterns, Character.MAX_VALUE + 1);
+		bytesAutomaton = new AhoCorasick(bytesPatterns, 256);
+	}
+
+	/**
+	 * Searches the whole message, so that every value and regex that occurs in it is reported.
+	 * A bytes message is reset, so that it can be read again from the start.
+	 * @return what was found where, i.e. "foo in body", one per value or regex. Empty if nothing was found
+	 */
+	public List<String> find(final Message msg) throws JMSException {
+		final Hits hits = new Hits(values.size() + patterns.size());
+		if (msg instanceof TextMessage) {
+			searchText(((TextMessage) msg).getText(), "body", hits);
+		} else if (msg instanceof BytesMessage) {
+			final BytesMessage bytesMsg = (BytesMessage) msg;
+			bytesMsg.reset();
+			final byte[] body = new byte[(int) bytesMsg.getBodyLength()];
+			bytesMsg.readBytes(body);
+			bytesMsg.reset();
+			searchBytes(body, "body", hits);
+		} else if (msg instanceof MapMessage) {
+			final MapMessage mapMsg = (MapMessage) msg;
+			@SuppressWarnings("unchecked")
+			final Enumeration<String> names = mapMsg.getMapNames();
+			while (names.hasMoreElements() && !hits.isComplete()) {
+				final String name = names.nextElement();
+				final Object value = mapMsg.getObject(name);
+				if (value instanceof byte[]) {
+					searchBytes((byte[]) value, "map entry " + name, hits);
+				} else if (value != null) {
+					searchText(value.toString(), "map entry " + name, hits);
+				}
+			}
+		}
+		@SuppressWarnings("unchecked")
+		final Enumeration<String> names = msg.getPropertyNames();
+		while (names.hasMoreElements() && !hits.isComplete()) {
+			final String name = names.nextElement();
+			final Object value = msg.getObjectProperty(name);
+			if (value != null) {
+				searchText(value.toString(), "property " + name, hits);
+			}
+		}
+		return hits.found;
+	}
+
+	/**
+	 * @return true if any value or regex is found in the message.
+	 */
+	public boolean matches(final Message msg) throws JMSException {
+		return !find(msg).isEmpty();
+	}
+
+	private void searchText(final String text, final String where, final Hits hits) {
+		if (text == null) {
+			return;
+		}
+		int state = AhoCorasick.START;
+		hits.add(textAutomaton.matches(state), where);
+		for (int i = 0; i < text.length() && hits.valuesLeft > 0; i++) {
+			state = textAutomaton.next(state, text.charAt(i));
+			hits.add(textAutomaton.matches(state), where);
+		}
+		searchPatterns(text, where, hits);
+	}
+
+	private void searchBytes(final byte[] bytes, final String where, final Hits hits) {
+		int state = AhoCorasick.START;
+		hits.add(bytesAutomaton.matches(state), where);
+		for (int i = 0; i < bytes.length && hits.valuesLeft > 0; i++) {
+			state = bytesAutomaton.next(state, bytes[i] & 0xFF);
+			hits.add(bytesAutomaton.matches(state), where);
+		}
+		if (hits.patternsLeft > 0) {
+			searchPatterns(new String(bytes, charset), where, hits);
+		}
+	}
+
+	private void searchPatterns(final String text, final String where, final Hits hits) {
+		for (int p = 0; p < patterns.size() && hits.patternsLeft > 0; p++) {
+			final int index = values.size() + p;
+			if (!hits.hit[index] && patterns.get(p).matcher(text).find()) {
+				hits.hit[index] = true;
+				hits.patternsLeft--;
+				hits.found.add("/" + patterns.get(p).pattern() + "/ in " + where);
+			}
+		}
+	}
+
+	// Values and regexes found so far in a message
+	private class Hits {
+		final boolean[] hit;
+		final List<String> found = new ArrayList<>();
+		int valuesLeft = values.size();
+		int patternsLeft = patterns.size();
+
+		Hits(final int count) {
+			hit = new boolean[count];
+		}
+
+		void add(final int[] matched, final String where) {
+			for (int index : matched) {
+				if (!hit[index]) {
+					hit[index] = true;
+					valuesLeft--;
+					found.add(values.get(index) + " in " + where);
+				}
+			}
+		}
+
+		boolean isComplete() {
+			return valuesLeft == 0 && patternsLeft == 0;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Compares the messages of two queues, or a queue and a dump, by a fingerprint of each message.
+ *
+ * Messages are matched by JMSMessageID, and then differ if their content does, or matched by their content only,
+ * for copies that got new message IDs. The content is the type, body, JMSType, JMSCorrelationID and properties,
+ * except those set by the broker or provider (JMSX*, JMS_* and _AMQ*).
+ *
+ * Each side keeps its fingerprints in memory up to a run size. Full runs are sorted and written to temporary files,
+ * which are merged when the sides are compared, so memory is bounded by the run size for any number of messages.
+ * Not thread safe.
+ */
+public class QueueDiff implements Closeable {
+
+	public static final int DEFAULT_RUN_SIZE = 100000;
+
+	public enum Difference {
+		ONLY_IN_A, ONLY_IN_B, CONTENT
+	}
+
+	public interface DifferenceHandler {
+		void handle(Difference difference, String messageId) throws IOException;
+	}
+
+	private final boolean byContent;
+	private final Side a;
+	private final Side b;
+	private final MessageDigest digest;
+	private long equal;
+
+	/**
+	 * @param byContent match messages by content instead of JMSMessageID
+	 * @param runSize fingerprints per side to keep in memory before a sorted run is written to disk
+	 */
+	public QueueDiff(final boolean byContent, final int runSize) {
+		this.byContent = byContent;
+		this.a = new Side(runSize);
+		this.b = new Side(runSize);
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void addA(final MessageDump msg) throws IOException {
+		a.add(fingerprint(msg));
+	}
+
+	public void addB(final MessageDump msg) throws IOException {
+		b.add(fingerprint(msg));
+	}
+
+	/**
+	 * Compares the sides. Call once, after all messages are added.
+	 */
+	public void diff(final DifferenceHandler handler) throws IOException {
+		final Iterator<Fingerprint> itA = a.sorted();
+		final Iterator<Fingerprint> itB = b.sorted();
+		Fingerprint fa = itA.hasNext() ? itA.next() : null;
+		Fingerprint fb = itB.hasNext() ? itB.next() : null;
+		while (fa != null || fb != null) {
+			final int cmp = fa == null ? 1 : fb == null ? -1 : fa.key.compareTo(fb.key);
+			if (cmp < 0) {
+				handler.handle(Difference.ONLY_IN_A, fa.messageId);
+				fa = itA.hasNext() ? itA.next() : null;
+			} else if (cmp > 0) {
+				handler.handle(Difference.ONLY_IN_B, fb.messageId);
+				fb = itB.hasNext() ? itB.next() : null;
+			} else {
+				if (fa.hi != fb.hi || fa.lo != fb.lo) {
+					handler.handle(Difference.CONTENT, fa.messageId);
+				} else {
+					equal++;
+				}
+				fa = itA.hasNext() ? itA.next() : null;
+				fb = itB.hasNext() ? itB.next() : null;
+			}
+		}
+	}
+
+	public long getCountA() {
+		return a.count;
+	}
+
+	public long getCountB() {
+		return b.count;
+	}
+
+	/**
+	 * @return messages on both sides with the same content, after {@link #diff(DifferenceHandler)}
+	 */
+	public long getEqual() {
+		return equal;
+	}
+
+	/**
+	 * @return runs written to disk so far, for both sides
+	 */
+	public int getSpilledRuns() {
+		return a.runs.size() + b.runs.size();
+	}
+
+	Fingerprint fingerprint(final MessageDump msg) {
+		update(msg.type);
+		update(msg.body);
+		update(msg.JMSType);
+		update(msg.JMSCorrelationID);
+		final Map<String, Object> properties = new TreeMap<>();
+		properties.putAll(msg.stringProperties);
+		properties.putAll(msg.intProperties);
+		properties.putAll(msg.longProperties);
+		properties.putAll(msg.floatProperties);
+		properties.putAll(msg.doubleProperties);
+		properties.putAll(msg.boolProperties);
+		properties.putAll(msg.shortProperties);
+		properties.putAll(msg.byteProperties);
+		properties.putAll(msg.objectProperties);
+		for (Map.Entry<String, Object> property : properties.entrySet()) {
+			if (!isBrokerProperty(property.getKey())) {
+				update(property.getKey());
+				update(String.valueOf(property.getValue()));
+			}
+		}
+		final byte[] hash = digest.digest();
+		long hi = 0;
+		long lo = 0;
+		for (int i = 0; i < 8; i++) {
+			hi = hi << 8 | (hash[i] & 0xff);
+			lo = lo << 8 | (hash[i + 8] & 0xff);
+		}
+		final String messageId = msg.JMSMessageID != null ? msg.JMSMessageID : "";
+		return new Fingerprint(byContent ? String.format("%016x%016x", hi, lo) : messageId, messageId, hi, lo);
+	}
+
+	// Each value is prefixed by its length, so that values cannot run into each other, and null differs from ""
+	private void update(final String value) {
+		if (value == null) {
+			digest.update((byte) 0);
+			return;
+		}
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		digest.update((byte) 1);
+		digest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+				(byte) (bytes.length >>> 8), (byte) bytes.length});
+		digest.update(bytes);
+	}
+
+	static boolean isBrokerProperty(final String name) {
+		return name.startsWith("JMSX") || name.startsWith("JMS_") || name.startsWith("_AMQ")
+				|| name.startsWith("__AMQ");
+	}
+
+	@Override
+	public void close() {
+		a.close();
+		b.close();
+	}
+
+	static class Fingerprint implements Comparable<Fingerprint> {
+		final String key;
+		final String messageId;
+		final long hi;
+		final long lo;
+
+		Fingerprint(final String key, final String messageId, final long hi, final long lo) {
+			this.key = key;
+			this.messageId = messageId;
+			this.hi = hi;
+			this.lo = lo;
+		}
+
+		@Override
+		public int compareTo(final Fingerprint other) {
+			final int cmp = key.compareTo(other.key);
+			if (cmp != 0) {
+				return cmp;
+			}
+			return hi != other.hi ? Long.compare(hi, other.hi) : Long.compare(lo, other.lo);
+		}
+
+		void write(final DataOutputStream out) throws IOException {
+			out.writeUTF(key);
+			out.writeUTF(messageId);
+			out.writeLong(hi);
+			out.writeLong(lo);
+		}
+
+		static Fingerprint read(final DataInputStream in) throws IOException {
+			final String key;
+			try {
+				key = in.readUTF();
+			} catch (EOFException e) {
+				return null;
+			}
+			return new Fingerprint(key, in.readUTF(), in.readLong(), in.readLong());
+		}
+	}
+
+	/**
+	 * Fingerprints of one side, in memory and in sorted runs on disk.
+	 */
+	private static class Side {
+		private final int runSize;
+		private final List<Fingerprint> buffer = new ArrayList<>();
+		private final List<File> runs = new ArrayList<>();
+		private final List<Closeable> readers = new ArrayList<>();
+		private long count;
+
+		Side(final int runSize) {
+			this.runSize = runSize;
+		}
+
+		void add(final Fingerprint fingerprint) throws IOException {
+			count++;
+			buffer.add(fingerprint);
+			if (buffer.size() >= runSize) {
+				spill();
+			}
+		}
+
+		private void spill() throws IOException {
+			Collections.sort(buffer);
+			final File run = File.createTempFile("a-diff-", ".run");
+			run.deleteOnExit();
+			runs.add(run);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+				for (Fingerprint fingerprint : buffer) {
+					fingerprint.write(out);
+				}
+			}
+			buffer.clear();
+		}
+
+		/**
+		 * @return all fingerprints in order, merged from the runs
+		 */
+		Iterator<Fingerprint> sorted() throws IOException {
+			if (runs.isEmpty()) {
+				Collections.sort(buffer);
+				return buffer.iterator();
+			}
+			if (!buffer.isEmpty()) {
+				spill();
+			}
+			final PriorityQueue<RunReader> heap = new PriorityQueue<>();
+			for (File run : runs) {
+				final RunReader reader = new RunReader(run);
+				readers.add(reader);
+				if (reader.head != null) {
+					heap.add(reader);
+				}
+			}
+			return new Iterator<Fingerprint>() {
+				@Override
+				public boolean hasNext() {
+					return !heap.isEmpty();
+				}
+
+				@Override
+				public Fingerprint next() {
+					final RunReader reader = heap.poll();
+					if (reader == null) {
+						throw new NoSuchElementException();
+					}
+					final Fingerprint next = reader.head;
+					try {
+						reader.advance();
+					} catch (IOException e) {
+						throw new IllegalStateException("Failed to read diff run", e);
+					}
+					if (reader.head != null) {
+						heap.add(reader);
+					}
+					return next;
+				}
+			};
+		}
+
+		void close() {
+			for (Closeable reader : readers) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// Only a temporary file
+				}
+			}
+			for (File run : runs) {
+				run.delete();
+			}
+		}
+	}
+
+	private static class RunReader implements Comparable<RunReader>, Closeable {
+		private final DataInputStream in;
+		private Fingerprint head;
+
+		RunReader(final File run) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+			advance();
+		}
+
+		void advance() throws IOException {
+			head = Fingerprint.read(in);
+		}
+
+		@Override
+		public int compareTo(final RunReader other) {
+			return head.compareTo(other.head);
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
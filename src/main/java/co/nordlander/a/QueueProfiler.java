@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+/**
+ * Profile of the messages in a queue: counts by message type, body sizes, ages from JMSTimestamp, redeliveries and
+ * the most common values of JMSType and of each property. Bodies are measured, never printed.
+ * Counters are primitive and histograms are {@link LatencyHistogram}s, so each message costs a few increments.
+ * Values are counted with the Misra-Gries algorithm in a bounded number of counters per property, so properties
+ * with unique values, like IDs, do not make memory grow with the number of messages.
+ * Thread safe.
+ */
+public class QueueProfiler {
+
+	public static final String DELIVERY_COUNT_PROPERTY = "JMSXDeliveryCount";
+	// Counters per property for each value reported
+	private static final int COUNTERS_PER_TOP = 10;
+	private static final int MAX_VALUE_LENGTH = 40;
+	private static final String NO_VALUE = "(none)";
+
+	private final int top;
+	private final Map<String, long[]> types = new TreeMap<>();
+	private final LatencyHistogram textSizes = new LatencyHistogram();
+	private final LatencyHistogram bytesSizes = new LatencyHistogram();
+	private final LatencyHistogram ages = new LatencyHistogram();
+	private final LatencyHistogram deliveryCounts = new LatencyHistogram();
+	private final TopValues jmsTypes;
+	private final Map<String, TopValues> properties = new TreeMap<>();
+	private long count;
+	private long untimed;
+	private long redelivered;
+
+	/**
+	 * @param top number of values to report per property and for JMSType
+	 */
+	public QueueProfiler(final int top) {
+		this.top = top;
+		jmsTypes = new TopValues(top * COUNTERS_PER_TOP);
+	}
+
+	public synchronized void add(final Message msg) throws JMSException {
+		count++;
+		final String type = MessageRecordWriter.typeOf(msg);
+		long[] typeCount = types.get(type);
+		if (typeCount == null) {
+			typeCount = new long[1];
+			types.put(type, typeCount);
+		}
+		typeCount[0]++;
+		if (msg instanceof TextMessage) {
+			final String text = ((TextMessage) msg).getText();
+			textSizes.record(text != null ? text.length() : 0);
+		} else if (msg instanceof BytesMessage) {
+			bytesSizes.record(((BytesMessage) msg).getBodyLength());
+		}
+		if (msg.getJMSTimestamp() > 0) {
+			ages.record(System.currentTimeMillis() - msg.getJMSTimestamp());
+		} else {
+			untimed++;
+		}
+		if (msg.getJMSRedelivered()) {
+			redelivered++;
+		}
+		if (msg.propertyExists(DELIVERY_COUNT_PROPERTY)) {
+			deliveryCounts.record(msg.getLongProperty(DELIVERY_COUNT_PROPERTY));
+		}
+		jmsTypes.add(msg.getJMSType() != null ? msg.getJMSType() : NO_VALUE);
+		@SuppressWarnings("unchecked")
+		final Enumeration<String> names = msg.getPropertyNames();
+		while (names.hasMoreElements()) {
+			final String name = names.nextElement();
+			TopValues values = properties.get(name);
+			if (values == null) {
+				values = new TopValues(top * COUNTERS_PER_TOP);
+				properties.put(name, values);
+			}
+			values.add(msg.getObjectProperty(name));
+		}
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the profile, one line per aspect
+	 */
+	public synchronized List<String> report() {
+		final List<String> lines = new ArrayList<>();
+		lines.add("Profile of " + count + " msgs");
+		if (count == 0) {
+			return lines;
+		}
+		final StringBuilder typeLine = new StringBuilder("Types:");
+		for (Map.Entry<String, long[]> type : types.entrySet()) {
+			typeLine.append(' ').append(type.getKey()).append(' ').append(type.getValue()[0]).append(',');
+		}
+		lines.add(typeLine.substring(0, typeLine.length() - 1));
+		if (textSizes.getCount() > 0) {
+			lines.add("Text size in chars: " + textSizes.summary(""));
+		}
+		if (bytesSizes.getCount() > 0) {
+			lines.add("Bytes size: " + bytesSizes.summary("B"));
+		}
+		if (ages.getCount() > 0) {
+			lines.add("Age: " + ages.summary("ms"));
+		}
+		if (untimed > 0) {
+			lines.add(untimed + " msgs without JMSTimestamp");
+		}
+		lines.add("Redelivered: " + redelivered);
+		if (deliveryCounts.getCount() > 0) {
+			lines.add("Delivery count: " + deliveryCounts.summary(""));
+		}
+		lines.add("JMSType: " + jmsTypes.format(top));
+		for (Map.Entry<String, TopValues> property : properties.entrySet()) {
+			lines.add("Property " + property.getKey() + ": " + property.getValue().format(top));
+		}
+		return lines;
+	}
+
+	/**
+	 * Most common values, counted with the Misra-Gries algorithm. When all counters are taken, a new value
+	 * decrements every counter instead, which costs O(1) amortized per value. Any value that occurs in more than
+	 * 1 / (counters + 1) of the messages keeps a counter. Its count is then a lower bound, by at most the number
+	 * of decrements.
+	 * Values are counted as the objects the message holds, so numbers and booleans are not turned into strings
+	 * until they are reported.
+	 */
+	static class TopValues {
+		private final int counters;
+		private final Map<Object, long[]> counts = new HashMap<>();
+		private long total;
+		private long decrements;
+
+		TopValues(final int counters) {
+			this.counters = counters;
+		}
+
+		void add(final Object value) {
+			total++;
+			final long[] valueCount = counts.get(value);
+			if (valueCount != null) {
+				valueCount[0]++;
+			} else if (counts.size() < counters) {
+				counts.put(value, new long[] {1});
+			} else {
+				decrements++;
+				for (Iterator<long[]> it = counts.values().iterator(); it.hasNext(); ) {
+					if (--it.next()[0] == 0) {
+						it.remove();
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return the top values with their counts, i.e. "blue 40, red 12 of 52 msgs"
+		 */
+		String format(final int top) {
+			final List<Map.Entry<Object, long[]>> sorted = new ArrayList<>(counts.entrySet());
+			sorted.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+			final StringBuilder line = new StringBuilder();
+			for (int i = 0; i < Math.min(top, sorted.size()); i++) {
+				final String value = String.valueOf(sorted.get(i).getKey());
+				line.append(value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) + "..." : value)
+						.append(' ').append(sorted.get(i).getValue()[0]).append(", ");
+			}
+			line.setLength(Math.max(0, line.length() - 2));
+			line.append(" of ").append(total).append(" msgs");
+			if (decrements > 0) {
+				line.append(" (too many values, counts may be up to ").append(decrements).append(" low)");
+			}
+			return line.toString();
+		}
+	}
+}
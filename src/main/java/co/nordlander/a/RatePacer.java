@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces sends to a target rate, with an optional linear ramp-up.
+ *
+ * The send time of each message is fixed up front by the schedule and not by when the previous send returned.
+ * A slow send therefore does not push the following messages back. Latency measured from the intended
+ * send time includes the time a message waited behind a slow send, which avoids coordinated omission.
+ */
+public class RatePacer {
+
+	private final double ratePerNano;
+	private final long rampUpNanos;
+	private final double rampUpMessages;
+	private final long startNanos;
+
+	/**
+	 * @param rate target messages per second
+	 * @param rampUpNanos time to ramp linearly from zero to the target rate. 0 for no ramp-up
+	 */
+	public RatePacer(final double rate, final long rampUpNanos) {
+		if (rate <= 0) {
+			throw new IllegalArgumentException("Rate must be positive: " + rate);
+		}
+		this.ratePerNano = rate / TimeUnit.SECONDS.toNanos(1);
+		this.rampUpNanos = Math.max(0, rampUpNanos);
+		this.rampUpMessages = ratePerNano * this.rampUpNanos / 2.0;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * @param i message sequence number, starting at 0
+	 * @return when message i should be sent, relative to start
+	 */
+	public long intendedOffsetNanos(final long i) {
+		if (i < rampUpMessages) {
+			// Rate grows linearly, so the message count grows with the square of time.
+			return (long) Math.sqrt(2.0 * i * rampUpNanos / ratePerNano);
+		}
+		return rampUpNanos + (long) ((i - rampUpMessages) / ratePerNano);
+	}
+
+	/**
+	 * Waits until it is time to send message i.
+	 * Returns immediately if the schedule is already behind.
+	 * @return the intended send time in System.nanoTime() terms
+	 */
+	public long awaitSendTime(final long i) {
+		final long intended = startNanos + intendedOffsetNanos(i);
+		long remaining;
+		while ((remaining = intended - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return intended;
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Uniform random sample of K elements out of a stream of unknown length, in memory for K elements.
+ *
+ * Uses reservoir sampling with geometric skips (Li's algorithm L): instead of drawing a random number for each
+ * element, it draws how many elements to skip until the next one that goes into the sample. That is
+ * O(K (1 + log(N / K))) random numbers for N elements, so the elements past the first few thousand cost a counter
+ * increment each. Not thread safe.
+ */
+public class Reservoir<T> {
+
+	private final Object[] samples;
+	private final long[] positions;
+	private final Random random;
+	private long seen;
+	private double w;
+	private long next;
+
+	public Reservoir(final int size) {
+		this(size, new Random());
+	}
+
+	public Reservoir(final int size, final Random random) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Sample size must be positive: " + size);
+		}
+		this.samples = new Object[size];
+		this.positions = new long[size];
+		this.random = random;
+	}
+
+	/**
+	 * Offers the next element of the stream.
+	 * @return true if it was put in the sample, possibly replacing an earlier element
+	 */
+	public boolean add(final T element) {
+		final long position = seen++;
+		if (position < samples.length) {
+			store((int) position, position, element);
+			if (seen == samples.length) {
+				w = Math.exp(Math.log(uniform()) / samples.length);
+				skip();
+			}
+			return true;
+		}
+		if (position < next) {
+			return false;
+		}
+		store(random.nextInt(samples.length), position, element);
+		w *= Math.exp(Math.log(uniform()) / samples.length);
+		skip();
+		return true;
+	}
+
+	private void store(final int slot, final long position, final T element) {
+		samples[slot] = element;
+		positions[slot] = position;
+	}
+
+	private void skip() {
+		// w tends to 0 for long streams, where log1p keeps the precision that log(1 - w) would lose
+		final double gap = Math.floor(Math.log(uniform()) / Math.log1p(-w));
+		next = seen + (gap < Long.MAX_VALUE - seen ? (long) gap : Long.MAX_VALUE - seen);
+	}
+
+	// In (0, 1], so that the logarithm is finite
+	private double uniform() {
+		return 1.0 - random.nextDouble();
+	}
+
+	/**
+	 * @return the number of elements offered
+	 */
+	public long getSeen() {
+		return seen;
+	}
+
+	/**
+	 * @return the sample, in the order the elements were offered
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> getSample() {
+		final int size = (int) Math.min(seen, samples.length);
+		final Integer[] slots = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = i;
+		}
+		Arrays.sort(slots, Comparator.comparingLong(slot -> positions[slot]));
+		final List<T> sample = new ArrayList<>(size);
+		for (int slot : slots) {
+			sample.add((T) samples[slot]);
+		}
+		return sample;
+	}
+
+	/**
+	 * @return the positions in the stream of the sample, from 0, in the order of {@link #getSample()}
+	 */
+	public long[] getPositions() {
+		final long[] sorted = Arrays.copyOf(positions, (int) Math.min(seen, positions.length));
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message count and elapsed time of a single worker thread, i.e. a producer or a consumer.
+ * Each worker updates its own instance, so no synchronization is needed.
+ */
+public class WorkerStats {
+
+	private final String name;
+	private final long startNanos;
+	private long count;
+	private long elapsedNanos = -1;
+	private LatencyHistogram latency;
+	private long commits;
+	private long failed;
+	private long idleNanos;
+	private long blockedNanos;
+	private Exception error;
+
+	public WorkerStats(final String name) {
+		this.name = name;
+		this.startNanos = System.nanoTime();
+	}
+
+	public WorkerStats(final String name, final long count, final long elapsedNanos) {
+		this.name = name;
+		this.startNanos = System.nanoTime() - elapsedNanos;
+		this.count = count;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public void increment() {
+		count++;
+	}
+
+	public void stop() {
+		elapsedNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * @return latency histogram in microseconds, or null if latency was not measured.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public void setLatency(final LatencyHistogram latency) {
+		this.latency = latency;
+	}
+
+	public long getCommits() {
+		return commits;
+	}
+
+	public void setCommits(final long commits) {
+		this.commits = commits;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * Records why the worker stopped early. Messages that were counted but then rolled back are no longer counted.
+	 * @param rolledBack counted messages that were rolled back
+	 * @param failed messages that were not processed due to the error, including those rolled back
+	 */
+	public void fail(final Exception error, final long rolledBack, final long failed) {
+		this.error = error;
+		this.count -= rolledBack;
+		this.failed = failed;
+	}
+
+	/**
+	 * Adds time spent waiting for input from the previous stage of a pipeline.
+	 */
+	public void addIdle(final long nanos) {
+		idleNanos += nanos;
+	}
+
+	public long getIdleMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(idleNanos);
+	}
+
+	/**
+	 * Adds time spent waiting for room in the queue of the next stage of a pipeline.
+	 */
+	public void addBlocked(final long nanos) {
+		blockedNanos += nanos;
+	}
+
+	public long getBlockedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(blockedNanos);
+	}
+
+	/**
+	 * @return the error that stopped the worker, or null.
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+	}
+
+	/**
+	 * @return messages per second.
+	 */
+	public double getThroughput() {
+		long nanos = getElapsedNanos();
+		return nanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / nanos : 0.0;
+	}
+}
@@ -30,7 +30,9 @@ import javax.jms.MessageConsumer;
 import javax.jms.TextMessage;
 import java.net.MalformedURLException;
 import static co.nordlander.a.A.CMD_AMQP;
+import static co.nordlander.a.A.CMD_ASYNC_SEND;
 import static co.nordlander.a.A.CMD_BROKER;
+import static co.nordlander.a.A.CMD_COUNT;
 import static co.nordlander.a.A.CMD_PUT;
 
 /**
@@ -68,6 +70,18 @@ public class AMQPTest extends BaseTest {
         return "-" + CMD_AMQP + " -" + CMD_BROKER + " " + AMQ_AMQP_URL + " ";
     }
 
+    /**
+     * The AMQP client does not report failed asynchronous sends, so they are rejected.
+     */
+    @Override
+    public void testPutAsync() throws Exception {
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " test -" + CMD_COUNT + " 10 --" + CMD_ASYNC_SEND
+                + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("Option --" + CMD_ASYNC_SEND + " cannot be used with AMQP"));
+        assertNull(session.createConsumer(testQueue).receive(SHORT_TEST_TIMEOUT));
+    }
+
    @Override
    protected void clearBroker() throws Exception {
       // Clear
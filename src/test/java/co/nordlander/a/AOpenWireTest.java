@@ -18,15 +18,24 @@
 package co.nordlander.a;
 
 import static co.nordlander.a.A.CMD_BROKER;
+import static co.nordlander.a.A.CMD_JMX_URL;
 import static co.nordlander.a.A.CMD_LIST_QUEUES;
+import static co.nordlander.a.A.CMD_PURGE;
 import static co.nordlander.a.A.CMD_PUT;
+import static co.nordlander.a.A.CMD_SERVER_SIDE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.rmi.registry.LocateRegistry;
+
 import javax.jms.ConnectionFactory;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageProducer;
 import javax.jms.TextMessage;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.command.ActiveMQDestination;
@@ -48,6 +57,8 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 public class AOpenWireTest extends BaseTest{
 
 	public static final String AMQ_URL = "tcp://localhost:61916";
+	public static final int JMX_PORT = 61999;
+	private static JMXServiceURL jmxUrl;
 
 	@Test
 	public void jndiConnectTest() throws Exception {
@@ -58,6 +69,22 @@ public class AOpenWireTest extends BaseTest{
 		assertEquals("test", msg.getText());
 	}
 	
+	@Test
+	public void testServerSidePurgeFallsBackWithoutJmx() throws Exception {
+		MessageProducer mp = session.createProducer(testQueue);
+		for (int i = 0; i < 3; i++) {
+			mp.send(testMessage);
+		}
+		// Nothing listens on this port
+		String cmdLine = getConnectCommand() + "--" + CMD_JMX_URL + " service:jmx:rmi:///jndi/rmi://localhost:"
+				+ (JMX_PORT + 1) + "/jmxrmi --" + CMD_PURGE + " --" + CMD_SERVER_SIDE + " TEST.QUEUE";
+		a.run(cmdLine.split(" "));
+		String out = output.grab();
+		assertTrue(out.contains("Cannot connect to JMX"));
+		assertTrue(out.contains("3 msgs purged from TEST.QUEUE"));
+		assertEquals(0, getAllMessages(session.createConsumer(testQueue)).size());
+	}
+
 	@Test
 	@Ignore // test seem fails under some conditions. The list command is not waterproof.
 	public void listQueuesTest() throws Exception {
@@ -84,6 +111,30 @@ public class AOpenWireTest extends BaseTest{
 		return "-" + CMD_BROKER + " " + AMQ_URL + " ";
 	}
 
+	@Override
+	protected String getStreamConnectCommand(File folder) {
+		// Blob messages are uploaded to the file system, instead of to a web server
+		return "-" + CMD_BROKER + " " + AMQ_URL + "?jms.blobTransferPolicy.uploadUrl="
+				+ new File(folder, "blobs").toURI() + " ";
+	}
+
+	/**
+	 * The embedded broker registers its MBeans with the platform MBean server, which is exposed over RMI once.
+	 */
+	@Override
+	protected String getServerSideConnectCommand() throws Exception {
+		synchronized (AOpenWireTest.class) {
+			if (jmxUrl == null) {
+				LocateRegistry.createRegistry(JMX_PORT);
+				JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + JMX_PORT + "/jmxrmi");
+				JMXConnectorServerFactory.newJMXConnectorServer(url, null, ManagementFactory.getPlatformMBeanServer())
+						.start();
+				jmxUrl = url;
+			}
+		}
+		return getConnectCommand() + "--" + CMD_JMX_URL + " " + jmxUrl + " ";
+	}
+
    @Override
    protected void clearBroker() throws Exception {
       // Clear
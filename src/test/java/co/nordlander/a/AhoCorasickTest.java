@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing that all patterns are found in one pass, including patterns that overlap or end inside others.
+ */
+public class AhoCorasickTest {
+
+	@Test
+	public void findsOverlappingPatterns() {
+		final String[] words = {"he", "she", "his", "hers"};
+		final int[][] patterns = new int[words.length][];
+		for (int i = 0; i < words.length; i++) {
+			patterns[i] = words[i].chars().toArray();
+		}
+		final AhoCorasick automaton = new AhoCorasick(patterns, Character.MAX_VALUE + 1);
+		final List<String> found = new ArrayList<>();
+		int state = AhoCorasick.START;
+		for (char c : "ushers and his".toCharArray()) {
+			state = automaton.next(state, c);
+			for (int p : automaton.matches(state)) {
+				found.add(words[p]);
+			}
+		}
+		Assert.assertEquals(Arrays.asList("she", "he", "hers", "his"), found);
+	}
+
+	@Test
+	public void emptyPatternMatchesAtStart() {
+		final AhoCorasick automaton = new AhoCorasick(new int[][] {{}, {1, 2}}, 256);
+		Assert.assertArrayEquals(new int[] {0}, automaton.matches(AhoCorasick.START));
+		Assert.assertArrayEquals(new int[] {1, 0}, automaton.matches(automaton.next(automaton.next(0, 1), 2)));
+		Assert.assertEquals(AhoCorasick.START, automaton.next(automaton.next(0, 1), 7));
+	}
+}
@@ -19,17 +19,22 @@ package co.nordlander.a;
 
 import org.apache.activemq.artemis.api.core.QueueConfiguration;
 import org.apache.activemq.artemis.api.jms.ActiveMQJMSClient;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
 import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 import javax.jms.ConnectionFactory;
 import javax.jms.Message;
 import javax.jms.MessageProducer;
 import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static co.nordlander.a.A.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests A with Artemis/HornetQ native protocol.
@@ -63,6 +68,49 @@ public class ArtemisJmsTest extends BaseTest{
       return "-" + CMD_ARTEMIS_CORE + " -" + CMD_BROKER + " " + AMQ_ARTEMIS_URL + " ";
    }
 
+   @Override
+   protected String getServerSideConnectCommand() {
+      return getConnectCommand();
+   }
+
+   @Override
+   protected String getPrefetchCommand() {
+      return "--" + CMD_CONSUMER_WINDOW + " 2048 ";
+   }
+
+   @Test
+   public void testGetWithConcurrentConsumersSharesBacklog() throws Exception {
+      final String cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 200 --" + CMD_CONSUMERS
+            + " 2 TEST.QUEUE";
+      MessageProducer mp = session.createProducer(testQueue);
+      for (int i = 0; i < 200; i++) {
+         mp.send(testMessage);
+      }
+      a.run(cmdLine.split(" "));
+      String out = output.grab();
+      assertTrue("Total expected", out.contains("Total: 200 msgs received"));
+      // With the default window of 1 MiB, the first consumer could buffer the whole backlog
+      assertEquals(Integer.parseInt(DEFAULT_COMPETING_CONSUMER_WINDOW),
+            ((ActiveMQConnectionFactory) a.cf).getConsumerWindowSize());
+      Matcher m = Pattern.compile("Consumer \\d: (\\d+) msgs received").matcher(out);
+      int consumers = 0;
+      while (m.find()) {
+         assertTrue("Each consumer gets messages", Integer.parseInt(m.group(1)) > 0);
+         consumers++;
+      }
+      assertEquals(2, consumers);
+   }
+
+   @Test
+   public void testPrefetchIsRejected() throws Exception {
+      final String cmdLine = getConnectCommand() + "-" + CMD_GET + " --" + CMD_PREFETCH + " 10 TEST.QUEUE";
+      MessageProducer mp = session.createProducer(testQueue);
+      mp.send(testMessage);
+      a.run(cmdLine.split(" "));
+      assertTrue(output.grab().contains("Option --" + CMD_PREFETCH + " cannot be used with Artemis Core"));
+      assertEquals(1, getAllMessages(session.createConsumer(testQueue)).size());
+   }
+
    /**
     * Special treatment for testGetCount since Artemis sets optional JMS headers.
     * @throws Exception
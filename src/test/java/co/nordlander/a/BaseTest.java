@@ -20,11 +20,18 @@ import static co.nordlander.a.A.*;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -56,6 +63,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -87,7 +95,28 @@ public abstract class BaseTest {
     protected abstract ConnectionFactory getConnectionFactory();
     protected abstract String getConnectCommand();
     protected abstract void clearBroker() throws Exception;
+
+    /**
+     * Connect command for streaming large messages. Some providers need extra configuration.
+     */
+    protected String getStreamConnectCommand(File folder) {
+        return getConnectCommand();
+    }
     
+    /**
+     * Connect command for moving, copying and purging on the broker side, or null if the broker cannot do that.
+     */
+    protected String getServerSideConnectCommand() throws Exception {
+        return null;
+    }
+
+    /**
+     * Option that lets a consumer buffer about 10 small messages.
+     */
+    protected String getPrefetchCommand() {
+        return "--" + CMD_PREFETCH + " 10 ";
+    }
+
     @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
 
 
@@ -149,6 +178,70 @@ public abstract class BaseTest {
     
     }
 
+    @Test
+    public void testPutWithConcurrentProducers() throws Exception {
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " test -" + CMD_COUNT + " 10 --" + CMD_PRODUCERS + " 3 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Per producer throughput expected", out.contains("Producer 3: 3 msgs sent"));
+        assertTrue("Total throughput expected", out.contains("Total: 10 msgs sent"));
+        MessageConsumer mc = session.createConsumer(testQueue);
+        for (int i = 0; i < 10; i++) {
+            TextMessage msg = (TextMessage)mc.receive(TEST_TIMEOUT);
+            assertNotNull(msg);
+            assertEquals("test", msg.getText());
+        }
+        assertNull(mc.receive(SHORT_TEST_TIMEOUT));
+    }
+
+    @Test
+    public void testPutGeneratedBytes() throws Exception {
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " gen:random:uniform(10,20) -" + CMD_TYPE + " bytes -"
+                + CMD_COUNT + " 5 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        MessageConsumer mc = session.createConsumer(testQueue);
+        for (int i = 0; i < 5; i++) {
+            BytesMessage msg = (BytesMessage)mc.receive(TEST_TIMEOUT);
+            assertNotNull(msg);
+            assertTrue("Size within bounds", msg.getBodyLength() >= 10 && msg.getBodyLength() <= 20);
+        }
+    }
+
+    @Test
+    public void testPutGeneratedTemplate() throws Exception {
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " gen:template:msg-${seq} -" + CMD_COUNT + " 3 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        MessageConsumer mc = session.createConsumer(testQueue);
+        for (int i = 1; i <= 3; i++) {
+            TextMessage msg = (TextMessage)mc.receive(TEST_TIMEOUT);
+            assertNotNull(msg);
+            assertEquals("msg-" + i, msg.getText());
+        }
+    }
+
+    @Test
+    public void testPutWithRate() throws Exception {
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " test -" + CMD_COUNT + " 20 --" + CMD_RATE + " 200 TEST.QUEUE";
+        long start = System.currentTimeMillis();
+        a.run(cmdLine.split(" "));
+        assertTrue("Sending 20 messages at 200 msgs/s should take about 100ms", System.currentTimeMillis() - start >= 90);
+        String out = output.grab();
+        assertTrue("Latency percentiles expected", out.contains("Send latency: n=20 p50="));
+        assertTrue("Latency percentiles expected", out.contains("p99.9="));
+        assertEquals(20, getAllMessages(session.createConsumer(testQueue)).size());
+    }
+
+    @Test
+    public void testPutAsync() throws Exception {
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " test -" + CMD_COUNT + " 10 --" + CMD_ASYNC_SEND
+                + " --" + CMD_SEND_WINDOW + " 65536 --" + CMD_SEND_TIMEOUT + " 10000 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Error count expected", out.contains("0 asynchronous send errors"));
+        assertFalse("All sends confirmed", out.contains("not confirmed"));
+        assertEquals(10, getAllMessages(session.createConsumer(testQueue)).size());
+    }
+
     @Test
     public void testPutWithPriorityAndType() throws Exception{
         final int priority = 6;
@@ -282,6 +375,86 @@ public abstract class BaseTest {
         assertEquals("new", msg.getStringProperty("changeme"));
     }
 
+    /**
+     * Test that find searches for several values and regexes in text, bytes and map messages and properties.
+     * @throws Exception
+     */
+    @Test
+    public void testFindMultiplePatterns() throws Exception {
+        MessageProducer mp = session.createProducer(sourceQueue);
+        mp.send(session.createTextMessage("an apple"));
+        BytesMessage bytesMsg = session.createBytesMessage();
+        bytesMsg.writeBytes("a banana".getBytes(StandardCharsets.UTF_8));
+        mp.send(bytesMsg);
+        MapMessage mapMsg = session.createMapMessage();
+        mapMsg.setString("fruit", "cherry");
+        mp.send(mapMsg);
+        TextMessage propertyMsg = session.createTextMessage("no fruit");
+        propertyMsg.setStringProperty("ref", "order-42");
+        mp.send(propertyMsg);
+        mp.send(session.createTextMessage("nothing"));
+
+        String cmdLine = getConnectCommand() + "-" + CMD_FIND + " apple -" + CMD_FIND + " banana -" + CMD_FIND
+                + " cherry --" + CMD_FIND_REGEX + " order-\\d+ -" + CMD_ENCODING + " UTF-8 SOURCE.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("Found: apple in body"));
+        assertTrue(out.contains("Found: banana in body"));
+        assertTrue(out.contains("Found: cherry in map entry fruit"));
+        assertTrue(out.contains("Found: /order-\\d+/ in property ref"));
+        assertFalse(out.contains("nothing"));
+
+        cmdLine = getConnectCommand() + "-" + CMD_COPY_QUEUE + " SOURCE.QUEUE -" + CMD_FIND + " banana -" + CMD_FIND
+                + " cherry TARGET.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("2 msgs copied from SOURCE.QUEUE to TARGET.QUEUE"));
+        MessageConsumer mc = session.createConsumer(targetQueue);
+        assertNotNull(mc.receive(TEST_TIMEOUT));
+        assertNotNull(mc.receive(TEST_TIMEOUT));
+        assertNull(mc.receive(SHORT_TEST_TIMEOUT));
+    }
+
+    /**
+     * Test that a pipelined copy filters, transforms and sends all matching messages with several producers.
+     * @throws Exception
+     */
+    @Test
+    public void testPipelinedCopy() throws Exception {
+        MessageProducer mp = session.createProducer(sourceQueue);
+        for (int i = 0; i < 50; i++) {
+            mp.send(session.createTextMessage((i % 5 == 0 ? "skip " : "copy ") + i));
+        }
+        final String script = "\"msg.stringProperties.put('changeme','new');\"";
+        String cmdLine = getConnectCommand() + "-" + CMD_COPY_QUEUE + " SOURCE.QUEUE --" + CMD_PRODUCERS + " 3 --"
+                + CMD_TRANSFORMERS + " 2 -" + CMD_FIND + " copy -" + CMD_TRANSFORM_SCRIPT + " " + script + " TARGET.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("Browser: 50 msgs browsed"));
+        assertTrue(out.contains("Transformer 2: "));
+        assertTrue(out.contains("Producer 3: "));
+        assertTrue(out.contains("40 msgs copied from SOURCE.QUEUE to TARGET.QUEUE"));
+        MessageConsumer mc = session.createConsumer(targetQueue);
+        List<TextMessage> copied = getAllMessages(mc);
+        mc.close();
+        assertEquals(40, copied.size());
+        Set<String> texts = new HashSet<>();
+        for (TextMessage msg : copied) {
+            assertTrue(msg.getText().startsWith("copy "));
+            assertEquals("new", msg.getStringProperty("changeme"));
+            texts.add(msg.getText());
+        }
+        assertEquals(40, texts.size());
+
+        // Without filter, the browser feeds the producers directly
+        cmdLine = getConnectCommand() + "-" + CMD_COPY_QUEUE + " SOURCE.QUEUE --" + CMD_PRODUCERS + " 2 TARGET.QUEUE";
+        a.run(cmdLine.split(" "));
+        out = output.grab();
+        assertFalse(out.contains("Transformer"));
+        assertTrue(out.contains("50 msgs copied from SOURCE.QUEUE to TARGET.QUEUE"));
+        assertEquals(50, getAllMessages(session.createConsumer(targetQueue)).size());
+        assertEquals(50, getAllMessages(session.createConsumer(sourceQueue)).size());
+    }
+
     /**
      * Test that all messages are moved from one queue to the other.
      * @throws Exception
@@ -401,6 +574,314 @@ public abstract class BaseTest {
     }
 
 
+    @Test
+    public void testMoveQueueWithCommitBatch() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_MOVE_QUEUE + " SOURCE.QUEUE --" + CMD_COMMIT_BATCH + " 2 TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        for (int i = 0; i < 5; i++) {
+            mp.send(testMessage);
+        }
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Batch count expected", out.contains("3 transactions committed"));
+        assertEquals(0, getAllMessages(session.createConsumer(sourceQueue)).size());
+        assertEquals(5, getAllMessages(session.createConsumer(targetQueue)).size());
+    }
+
+    @Test
+    public void testMoveQueueWithCommitBytes() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_MOVE_QUEUE + " SOURCE.QUEUE --" + CMD_COMMIT_BYTES + " 25 TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        for (int i = 0; i < 5; i++) {
+            mp.send(session.createTextMessage("0123456789"));
+        }
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Batch count expected", out.contains("2 transactions committed"));
+        assertEquals(0, getAllMessages(session.createConsumer(sourceQueue)).size());
+        assertEquals(5, getAllMessages(session.createConsumer(targetQueue)).size());
+    }
+
+    @Test
+    public void testPutBytesWithCommitBytes() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_PUT + " 0123456789 -" + CMD_TYPE + " " + TYPE_BYTES
+                + " -" + CMD_COUNT + " 5 --" + CMD_COMMIT_BYTES + " 25 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue("Batch count expected", output.grab().contains("2 transactions committed"));
+        MessageConsumer mc = session.createConsumer(testQueue);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(mc.receive(TEST_TIMEOUT));
+        }
+        mc.close();
+    }
+
+    @Test
+    public void testMoveQueueWithConcurrentConsumers() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_MOVE_QUEUE + " SOURCE.QUEUE -" + CMD_COUNT + " 7 --"
+                + CMD_CONSUMERS + " 3 TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        for (int i = 0; i < 10; i++) {
+            mp.send(testMessage);
+        }
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Total expected", out.contains("Total: 7 msgs moved"));
+        assertTrue("Summary expected", out.contains("7 msgs moved from SOURCE.QUEUE to TARGET.QUEUE"));
+        assertEquals(3, getAllMessages(session.createConsumer(sourceQueue)).size());
+        assertEquals(7, getAllMessages(session.createConsumer(targetQueue)).size());
+    }
+
+    @Test
+    public void testMoveQueueByGroupNeedsALane() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_MOVE_QUEUE + " SOURCE.QUEUE --" + CMD_GROUP_LANES
+                + " 0 TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        mp.send(testMessage);
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("Option --" + CMD_GROUP_LANES + " must be at least 1"));
+        assertEquals(1, getAllMessages(session.createConsumer(sourceQueue)).size());
+    }
+
+    @Test
+    public void testMoveQueueByGroup() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_MOVE_QUEUE + " SOURCE.QUEUE --" + CMD_GROUP_LANES
+                + " 3 --" + CMD_COMMIT_BATCH + " 7 TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        String[] groups = {"A", "B", "C", "D", null};
+        for (int i = 0; i < 10; i++) {
+            for (String group : groups) {
+                TextMessage msg = session.createTextMessage(group + "-" + i);
+                if (group != null) {
+                    msg.setStringProperty("JMSXGroupID", group);
+                }
+                mp.send(msg);
+            }
+        }
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Total expected", out.contains("Total: 50 msgs moved"));
+        assertTrue("Summary expected", out.contains("50 msgs moved from SOURCE.QUEUE to TARGET.QUEUE"));
+        assertEquals(0, getAllMessages(session.createConsumer(sourceQueue)).size());
+
+        List<TextMessage> moved = getAllMessages(session.createConsumer(targetQueue));
+        assertEquals(50, moved.size());
+        Map<String, Integer> lastSeq = new HashMap<>();
+        for (TextMessage msg : moved) {
+            String[] parts = msg.getText().split("-");
+            int seq = Integer.parseInt(parts[1]);
+            if (!parts[0].equals("null")) {
+                assertTrue("Group order kept for " + msg.getText(), seq > lastSeq.getOrDefault(parts[0], -1));
+                lastSeq.put(parts[0], seq);
+            }
+        }
+    }
+
+    @Test
+    public void testMoveQueueByGroupWithFailedLane() throws Exception {
+        File scriptFile = tempFolder.newFile("fail.js");
+        FileUtils.writeStringToFile(scriptFile, "if (msg.body == 'B-5') { throw 'bad message'; }",
+                StandardCharsets.UTF_8);
+        // A and C go to one lane, B and D to the other
+        final String cmdLine = getConnectCommand() + "-" + CMD_MOVE_QUEUE + " SOURCE.QUEUE --" + CMD_GROUP_LANES
+                + " 2 --" + CMD_COMMIT_BATCH + " 40 -" + CMD_TRANSFORM_SCRIPT + " @" + scriptFile.getAbsolutePath()
+                + " TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        for (String group : new String[]{"A", "B", "C", "D"}) {
+            for (int i = 0; i < 10; i++) {
+                TextMessage msg = session.createTextMessage(group + "-" + i);
+                msg.setStringProperty("JMSXGroupID", group);
+                mp.send(msg);
+            }
+        }
+        try {
+            a.run(cmdLine.split(" "));
+            fail("A failed lane should fail the move");
+        } catch (Exception e) {
+            // Expected
+        }
+        String out = output.grab();
+
+        Set<String> moved = new HashSet<>();
+        for (TextMessage msg : getAllMessages(session.createConsumer(targetQueue))) {
+            assertTrue("Committed lane moved " + msg.getText(), msg.getText().matches("[AC]-\\d"));
+            moved.add(msg.getText());
+        }
+        assertEquals(20, moved.size());
+        // Messages left on the source are either not moved, or printed as moved by another lane
+        int left = 0;
+        for (TextMessage msg : getAllMessages(session.createConsumer(sourceQueue))) {
+            if (moved.contains(msg.getText())) {
+                assertTrue("Duplicate printed", out.contains(msg.getJMSMessageID()));
+            } else {
+                left++;
+            }
+        }
+        assertEquals(20, left);
+    }
+
+    @Test
+    public void testResumeMoveWithJournal() throws Exception {
+        MessageProducer mp = session.createProducer(sourceQueue);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TextMessage msg = session.createTextMessage("msg" + i);
+            mp.send(msg);
+            ids.add(msg.getJMSMessageID());
+        }
+        // An earlier run sent msg1, but stopped before it was acknowledged on the source
+        File journal = tempFolder.newFile("move.journal");
+        FileUtils.writeStringToFile(journal, "S " + ids.get(1) + "\n", StandardCharsets.UTF_8);
+
+        final String cmdLine = getConnectCommand() + "-" + CMD_MOVE_QUEUE + " SOURCE.QUEUE --" + CMD_JOURNAL + " "
+                + journal.getAbsolutePath() + " TARGET.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("2 msgs moved from SOURCE.QUEUE to TARGET.QUEUE"));
+        assertTrue(out.contains("1 msgs were moved before"));
+        assertTrue(out.contains("3 msgs moved in total"));
+        assertEquals(0, getAllMessages(session.createConsumer(sourceQueue)).size());
+        List<TextMessage> moved = getAllMessages(session.createConsumer(targetQueue));
+        assertEquals(2, moved.size());
+        assertEquals("msg0", moved.get(0).getText());
+        assertEquals("msg2", moved.get(1).getText());
+    }
+
+    @Test
+    public void testServerSideMove() throws Exception {
+        String connect = getServerSideConnectCommand();
+        final String cmdLine = (connect != null ? connect : getConnectCommand()) + "-" + CMD_MOVE_QUEUE
+                + " SOURCE.QUEUE --" + CMD_SERVER_SIDE + " TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        for (int i = 0; i < 3; i++) {
+            mp.send(testMessage);
+        }
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("3 msgs moved from SOURCE.QUEUE to TARGET.QUEUE"));
+        assertEquals(connect == null, out.contains("Falling back to the client"));
+        assertEquals(0, getAllMessages(session.createConsumer(sourceQueue)).size());
+        assertEquals(3, getAllMessages(session.createConsumer(targetQueue)).size());
+    }
+
+    @Test
+    public void testServerSideCopyWithSelector() throws Exception {
+        String connect = getServerSideConnectCommand();
+        final String cmdLine = (connect != null ? connect : getConnectCommand()) + "-" + CMD_COPY_QUEUE
+                + " SOURCE.QUEUE --" + CMD_SERVER_SIDE + " -" + CMD_SELECTOR + " identity='theOne' TARGET.QUEUE";
+        MessageProducer mp = session.createProducer(sourceQueue);
+        Message theOne = session.createTextMessage("theOne");
+        theOne.setStringProperty("identity", "theOne");
+        mp.send(theOne);
+        mp.send(testMessage);
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("1 msgs copied from SOURCE.QUEUE to TARGET.QUEUE"));
+        assertEquals(2, getAllMessages(session.createConsumer(sourceQueue)).size());
+        List<TextMessage> copied = getAllMessages(session.createConsumer(targetQueue));
+        assertEquals(1, copied.size());
+        assertEquals("theOne", copied.get(0).getText());
+    }
+
+    @Test
+    public void testPurge() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 3; i++) {
+            mp.send(testMessage);
+        }
+        String cmdLine = getConnectCommand() + "--" + CMD_PURGE + " -" + CMD_COUNT + " 2 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("2 msgs purged from TEST.QUEUE"));
+        assertEquals(1, getAllMessages(session.createConsumer(testQueue)).size());
+    }
+
+    @Test
+    public void testServerSidePurge() throws Exception {
+        String connect = getServerSideConnectCommand();
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 3; i++) {
+            mp.send(testMessage);
+        }
+        String cmdLine = (connect != null ? connect : getConnectCommand()) + "--" + CMD_PURGE + " --"
+                + CMD_SERVER_SIDE + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("3 msgs purged from TEST.QUEUE"));
+        assertEquals(connect == null, out.contains("Falling back to the client"));
+        assertNull(session.createConsumer(testQueue).receive(SHORT_TEST_TIMEOUT));
+    }
+
+    @Test
+    public void testBrowsePaged() throws Exception {
+        Queue pagedQueue = session.createQueue("PAGED.QUEUE");
+        clearQueue(pagedQueue);
+        MessageProducer mp = session.createProducer(pagedQueue);
+        for (int i = 0; i < 60; i++) {
+            mp.send(session.createTextMessage("msg" + i), DeliveryMode.PERSISTENT, i % 10, 0);
+            if (i % 4 == 3) {
+                Thread.sleep(2);
+            }
+        }
+        String cmdLine = getConnectCommand() + "--" + CMD_PAGE_SIZE + " 10 --" + CMD_BROWSERS + " 3 -" + CMD_FIND
+                + " msg PAGED.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        Set<String> browsed = new HashSet<>();
+        Matcher m = Pattern.compile("Payload:" + LN + "(msg\\d+)").matcher(out);
+        while (m.find()) {
+            assertTrue("Browsed once " + m.group(1), browsed.add(m.group(1)));
+        }
+        assertEquals(60, browsed.size());
+        assertFalse(out.contains("Some messages may be missing"));
+
+        cmdLine = getConnectCommand() + "-" + CMD_COPY_QUEUE + " PAGED.QUEUE --" + CMD_PAGE_SIZE + " 10 TARGET.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("60 msgs copied from PAGED.QUEUE to TARGET.QUEUE"));
+        assertEquals(60, getAllMessages(session.createConsumer(targetQueue)).size());
+        assertEquals(60, getAllMessages(session.createConsumer(pagedQueue)).size());
+    }
+
+    @Test
+    public void testGetWithConcurrentConsumers() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 4 --" + CMD_CONSUMERS
+                + " 2 TEST.QUEUE";
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 5; i++) {
+            mp.send(testMessage);
+        }
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Total expected", out.contains("Total: 4 msgs received"));
+        assertEquals(1, getAllMessages(session.createConsumer(testQueue)).size());
+    }
+
+    @Test
+    public void testGetWithConcurrentConsumersRejectsListener() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_GET + " --" + CMD_CONSUMERS + " 2 --" + CMD_LISTENER
+                + " TEST.QUEUE";
+        MessageProducer mp = session.createProducer(testQueue);
+        mp.send(testMessage);
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("Option --" + CMD_CONSUMERS + " cannot be used with --" + CMD_LISTENER));
+        assertEquals(1, getAllMessages(session.createConsumer(testQueue)).size());
+    }
+
+    @Test
+    public void testGetAcknowledgesAfterIntervalWhileIdle() throws Exception {
+        final String cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 2 -" + CMD_WAIT + " 5000 --"
+                + CMD_ACK_MODE + " " + ACK_MODE_CLIENT + " --" + CMD_ACK_BATCH + " 100 --" + CMD_ACK_INTERVAL
+                + " 100 TEST.QUEUE";
+        Future<String> result = executor.submit(() -> {
+            a.run(cmdLine.split(" "));
+            return output.grab();
+        });
+        MessageProducer mp = session.createProducer(testQueue);
+        mp.send(testMessage);
+        // The first message is acknowledged while waiting for the second
+        Thread.sleep(1000);
+        mp.send(testMessage);
+        assertTrue(result.get().contains("2 acknowledgements sent"));
+    }
+
     @Test
     public void testGetCount() throws Exception{
         final String cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + "2 TEST.QUEUE";
@@ -466,6 +947,31 @@ public abstract class BaseTest {
         assertEquals("theOne",msgs.get(0).getText());
     }
 
+    @Test
+    public void testPutFilesAboveLargeFileThreshold() throws Exception {
+        File folder = tempFolder.newFolder();
+        final String text = "åäö€ large file";
+        final File file = new File(folder, "large.txt");
+        FileUtils.writeStringToFile(file, text, StandardCharsets.UTF_8);
+        a.largeFileThreshold = file.length();
+
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " @" + file.getAbsolutePath() + " -" + CMD_ENCODING
+                + " UTF-8 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        cmdLine = getConnectCommand() + "-" + CMD_PUT + " @" + file.getAbsolutePath() + " -" + CMD_TYPE + " "
+                + TYPE_BYTES + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+
+        MessageConsumer mc = session.createConsumer(testQueue);
+        TextMessage textMsg = (TextMessage) mc.receive(TEST_TIMEOUT);
+        assertEquals(text, textMsg.getText());
+        BytesMessage bytesMsg = (BytesMessage) mc.receive(TEST_TIMEOUT);
+        byte[] body = new byte[(int) bytesMsg.getBodyLength()];
+        bytesMsg.readBytes(body);
+        assertEquals(text, new String(body, StandardCharsets.UTF_8));
+        mc.close();
+    }
+
     @Test
     public void testSendMapMessage() throws Exception {
         File folder = tempFolder.newFolder();
@@ -565,6 +1071,22 @@ public abstract class BaseTest {
         assertEquals(utfText, new String(Base64.decodeBase64(resultMsg2.body), StandardCharsets.UTF_8));
     }
 
+    @Test
+    public void testDumpMessagesWithClientAck() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 3; i++) {
+            mp.send(testMessage);
+        }
+        File dumpFile = new File(tempFolder.newFolder(), "dump.json");
+        String cmdLine = getConnectCommand() + "-" + CMD_WRITE_DUMP + " " + dumpFile.getAbsolutePath() + " -"
+                + CMD_COUNT + " 3 --" + CMD_ACK_MODE + " client TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("Acknowledging when the dump is written"));
+        MessageDump[] dumped = new ObjectMapper().readValue(dumpFile, MessageDump[].class);
+        assertEquals(3, dumped.length);
+        assertNull(session.createConsumer(testQueue).receive(SHORT_TEST_TIMEOUT));
+    }
+
     @Test
     public void testDumpMessages_RollbackOnError() throws Exception{
         final String testCorrId = "MyCorrelationId";
@@ -698,6 +1220,22 @@ public abstract class BaseTest {
         mc.close();
     }
     
+    @Test
+    public void testRestoreDumpWithCommitBatch() throws Exception {
+        File dumpFile = tempFolder.newFile("testdump.json");
+        try (InputStream jsonStream = BaseTest.class.getClassLoader().getResourceAsStream("testdump.json") ){
+            FileUtils.writeByteArrayToFile(dumpFile, IOUtils.toByteArray(jsonStream));
+        }
+        String cmdLine = getConnectCommand() + "-" + CMD_RESTORE_DUMP + " " + dumpFile.getAbsolutePath()
+                + " --" + CMD_COMMIT_BATCH + " 1 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue("Batch count expected", output.grab().contains("2 transactions committed"));
+        MessageConsumer mc = session.createConsumer(testQueue);
+        assertNotNull(mc.receive(TEST_TIMEOUT));
+        assertNotNull(mc.receive(TEST_TIMEOUT));
+        mc.close();
+    }
+
     @Test
     public void testDumpMessagesAndTransform() throws Exception {
     	final String text = "A - JMS util";
@@ -741,6 +1279,7 @@ public abstract class BaseTest {
 
         System.out.println("Testing cmd: " + cmdLine);
         a.run(cmdLine.split(" "));
+        assertTrue("Lines per second expected", output.grab().contains("3 lines in "));
 
         MessageConsumer mc = session.createConsumer(testQueue);
         String[] entries = batchContent.split("\\n");
@@ -755,6 +1294,364 @@ public abstract class BaseTest {
 
     }
 
+    @Test
+    public void testGetWithClientAckBatch() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 5; i++) {
+            mp.send(testMessage);
+        }
+        String cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 5 --" + CMD_ACK_MODE
+                + " client --" + CMD_ACK_BATCH + " 2 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("Acknowledging every 2 messages"));
+        assertTrue(out.contains("3 acknowledgements sent"));
+        assertNull(session.createConsumer(testQueue).receive(SHORT_TEST_TIMEOUT));
+    }
+
+    @Test
+    public void testGetWithListener() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 3; i++) {
+            mp.send(session.createTextMessage("msg" + i));
+        }
+        String cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 2 --" + CMD_LISTENER + " "
+                + getPrefetchCommand() + "TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("msg0"));
+        assertTrue(out.contains("msg1"));
+        assertFalse(out.contains("msg2"));
+
+        // Prefetched beyond the count, but not acknowledged
+        MessageConsumer mc = session.createConsumer(testQueue);
+        TextMessage msg = (TextMessage) mc.receive(TEST_TIMEOUT);
+        assertNotNull(msg);
+        assertEquals("msg2", msg.getText());
+        assertNull(mc.receive(SHORT_TEST_TIMEOUT));
+    }
+
+    @Test
+    public void testGetWithListenerKeepsMessagesNotWritten() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 3; i++) {
+            mp.send(session.createTextMessage("msg" + i));
+        }
+        File missingFolder = new File(tempFolder.getRoot(), "missing");
+        String cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 3 --" + CMD_LISTENER + " -"
+                + CMD_OUTPUT + " " + new File(missingFolder, "msg").getAbsolutePath() + " TEST.QUEUE";
+        try {
+            a.run(cmdLine.split(" "));
+            fail("Writing to a missing folder should fail");
+        } catch (IOException e) {
+            // Expected
+        }
+        output.grab();
+        MessageConsumer mc = session.createConsumer(testQueue);
+        assertEquals(3, getAllMessages(mc).size());
+        mc.close();
+    }
+
+    @Test
+    public void testGetAndBrowseRecords() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 3; i++) {
+            TextMessage msg = session.createTextMessage("record " + i);
+            msg.setIntProperty("seq", i);
+            mp.send(msg);
+        }
+        File csv = tempFolder.newFile("records.csv");
+        String cmdLine = getConnectCommand() + "--" + CMD_FORMAT + " csv -" + CMD_OUTPUT + " " + csv.getAbsolutePath()
+                + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        List<String> rows = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, rows.size());
+        assertTrue(rows.get(0).startsWith("JMSMessageID,"));
+        assertTrue(rows.get(1), rows.get(1).endsWith(",TextMessage,record 0"));
+
+        cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 3 --" + CMD_FORMAT + " ndjson TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        ObjectMapper mapper = new ObjectMapper();
+        int records = 0;
+        for (String line : output.grab().split(System.lineSeparator())) {
+            if (line.startsWith("{")) {
+                JsonNode record = mapper.readTree(line);
+                assertEquals("record " + records, record.get("body").asText());
+                assertEquals(records, record.get("properties").get("seq").intValue());
+                records++;
+            }
+        }
+        assertEquals(3, records);
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 4; i++) {
+            TextMessage msg = session.createTextMessage("secret payload");
+            msg.setJMSType(i < 3 ? "order" : "invoice");
+            msg.setStringProperty("color", i < 2 ? "blue" : "red");
+            mp.send(msg);
+        }
+        BytesMessage bytesMsg = session.createBytesMessage();
+        bytesMsg.writeBytes(new byte[10]);
+        mp.send(bytesMsg);
+
+        String cmdLine = getConnectCommand() + "--" + CMD_PROFILE + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out, out.contains("Profile of 5 msgs"));
+        assertTrue(out, out.contains("Types: BytesMessage 1, TextMessage 4"));
+        assertTrue(out, out.contains("Bytes size: n=1 p50=10B"));
+        assertTrue(out, out.contains("JMSType: order 3, (none) 1, invoice 1 of 5 msgs")
+                || out.contains("JMSType: order 3, invoice 1, (none) 1 of 5 msgs"));
+        assertTrue(out, out.contains("Property color: blue 2, red 2 of 4 msgs")
+                || out.contains("Property color: red 2, blue 2 of 4 msgs"));
+        assertFalse(out, out.contains("secret"));
+
+        // A run without --profile outputs messages again
+        a.run((getConnectCommand() + "TEST.QUEUE").split(" "));
+        assertTrue(output.grab().contains("secret payload"));
+
+        cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 5 --" + CMD_PROFILE + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        out = output.grab();
+        assertTrue(out, out.contains("Profile of 5 msgs"));
+        assertFalse(out, out.contains("secret"));
+        assertEquals(0, getAllMessages(session.createConsumer(testQueue)).size());
+    }
+
+    @Test
+    public void testSample() throws Exception {
+        MessageProducer mp = session.createProducer(testQueue);
+        for (int i = 0; i < 50; i++) {
+            mp.send(session.createTextMessage("msg " + i));
+        }
+        String cmdLine = getConnectCommand() + "--" + CMD_SAMPLE + " 5 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out, out.contains("Sampled 5 of 50 msgs"));
+        assertEquals(out, 5, out.split("Sampled message ").length - 1);
+
+        File dumpFile = tempFolder.newFile("sample.json");
+        cmdLine = getConnectCommand() + "--" + CMD_SAMPLE + " 3 -" + CMD_WRITE_DUMP + " " + dumpFile.getAbsolutePath()
+                + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        MessageDump[] dumped = new ObjectMapper().readValue(dumpFile, MessageDump[].class);
+        assertEquals(3, dumped.length);
+        for (MessageDump dump : dumped) {
+            assertTrue(dump.body, dump.body.startsWith("msg "));
+        }
+        MessageConsumer consumer = session.createConsumer(testQueue);
+        assertEquals(50, getAllMessages(consumer).size());
+        consumer.close();
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        MessageProducer mp = session.createProducer(sourceQueue);
+        for (int i = 0; i < 3; i++) {
+            TextMessage msg = session.createTextMessage("msg " + i);
+            msg.setIntProperty("seq", i);
+            mp.send(msg);
+        }
+        String cmdLine = getConnectCommand() + "-" + CMD_COPY_QUEUE + " SOURCE.QUEUE TARGET.QUEUE";
+        a.run(cmdLine.split(" "));
+        session.createProducer(targetQueue).send(session.createTextMessage("extra"));
+        output.grab();
+
+        cmdLine = getConnectCommand() + "--" + CMD_DIFF + " TARGET.QUEUE --" + CMD_DIFF_BY + " content SOURCE.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out, out.contains("Only in TARGET.QUEUE: "));
+        assertTrue(out, out.contains("Compared 3 msgs in SOURCE.QUEUE with 4 msgs in TARGET.QUEUE: 0 only in "
+                + "SOURCE.QUEUE, 1 only in TARGET.QUEUE, 0 with different content, 3 equal"));
+
+        File dumpFile = tempFolder.newFile("diff.json");
+        cmdLine = getConnectCommand() + "--" + CMD_SAMPLE + " 10 -" + CMD_WRITE_DUMP + " " + dumpFile.getAbsolutePath()
+                + " SOURCE.QUEUE";
+        a.run(cmdLine.split(" "));
+        MessageConsumer consumer = session.createConsumer(sourceQueue);
+        TextMessage changed = (TextMessage) consumer.receive(TEST_TIMEOUT);
+        consumer.close();
+        session.createProducer(sourceQueue).send(session.createTextMessage("changed"));
+        output.grab();
+        cmdLine = getConnectCommand() + "--" + CMD_DIFF + " @" + dumpFile.getAbsolutePath() + " SOURCE.QUEUE";
+        a.run(cmdLine.split(" "));
+        out = output.grab();
+        assertTrue(out, out.contains("Only in @" + dumpFile.getAbsolutePath() + ": " + changed.getJMSMessageID()));
+        assertTrue(out, out.contains("Compared 3 msgs in SOURCE.QUEUE with 3 msgs in @" + dumpFile.getAbsolutePath()
+                + ": 1 only in SOURCE.QUEUE, 1 only in @" + dumpFile.getAbsolutePath() + ", 0 with different content, "
+                + "2 equal"));
+    }
+
+    @Test
+    public void testGetEndToEndLatency() throws Exception {
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " msg -" + CMD_COUNT + " 5 --" + CMD_SEND_TIME
+                + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        output.grab();
+        cmdLine = getConnectCommand() + "-" + CMD_GET + " -" + CMD_COUNT + " 5 --" + CMD_LATENCY + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("End to end latency: n=5"));
+        assertFalse(out.contains("msgs had no send time"));
+        assertFalse(out.contains("Payload:"));
+
+        MessageConsumer mc = session.createConsumer(testQueue);
+        assertNull(mc.receive(SHORT_TEST_TIMEOUT));
+    }
+
+    @Test
+    public void testPing() throws Exception {
+        Future<Integer> responder = executor.submit(() -> {
+            MessageConsumer mc = session.createConsumer(testQueue);
+            MessageProducer mp = session.createProducer(null);
+            int answered = 0;
+            Message request;
+            while ((request = mc.receive(TEST_TIMEOUT)) != null) {
+                TextMessage reply = session.createTextMessage(((TextMessage) request).getText());
+                reply.setJMSCorrelationID(request.getJMSCorrelationID());
+                mp.send(request.getJMSReplyTo(), reply);
+                answered++;
+            }
+            return answered;
+        });
+        String cmdLine = getConnectCommand() + "--" + CMD_PING + " hello -" + CMD_COUNT + " 3 --" + CMD_PRODUCERS
+                + " 2 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("Total: 3 msgs answered"));
+        assertTrue(out.contains("Round trip time: n=3"));
+        assertFalse(out.contains("timed out"));
+        assertEquals(3, responder.get().intValue());
+    }
+
+    @Test
+    public void testRespond() throws Exception {
+        final String cmdLine = getConnectCommand() + "--" + CMD_RESPOND + " -" + CMD_COUNT + " 2 -" + CMD_WAIT
+                + " 4000 TEST.QUEUE";
+        Future<String> result = executor.submit(() -> {
+            a.run(cmdLine.split(" "));
+            return output.grab();
+        });
+        Queue replyQueue = session.createTemporaryQueue();
+        MessageProducer mp = session.createProducer(testQueue);
+        TextMessage withCorrelationId = session.createTextMessage("ping1");
+        withCorrelationId.setJMSReplyTo(replyQueue);
+        withCorrelationId.setJMSCorrelationID("corr1");
+        mp.send(withCorrelationId);
+        TextMessage withoutCorrelationId = session.createTextMessage("ping2");
+        withoutCorrelationId.setJMSReplyTo(replyQueue);
+        mp.send(withoutCorrelationId);
+
+        MessageConsumer mc = session.createConsumer(replyQueue);
+        TextMessage reply = (TextMessage) mc.receive(TEST_TIMEOUT);
+        assertNotNull(reply);
+        assertEquals("ping1", reply.getText());
+        assertEquals("corr1", reply.getJMSCorrelationID());
+        reply = (TextMessage) mc.receive(TEST_TIMEOUT);
+        assertNotNull(reply);
+        assertEquals("ping2", reply.getText());
+        assertEquals(withoutCorrelationId.getJMSMessageID(), reply.getJMSCorrelationID());
+        assertTrue(result.get().contains("Total: 2 msgs answered"));
+    }
+
+    @Test
+    public void testRespondCountsReplies() throws Exception {
+        final String cmdLine = getConnectCommand() + "--" + CMD_RESPOND + " -" + CMD_COUNT + " 1 -" + CMD_WAIT
+                + " 4000 TEST.QUEUE";
+        MessageProducer mp = session.createProducer(testQueue);
+        mp.send(session.createTextMessage("no reply-to"));
+        Queue replyQueue = session.createTemporaryQueue();
+        TextMessage request = session.createTextMessage("ping");
+        request.setJMSReplyTo(replyQueue);
+        mp.send(request);
+
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue(out.contains("Total: 1 msgs answered"));
+        assertTrue(out.contains("1 msgs without a reply-to or with a deleted reply-to were not answered"));
+        MessageConsumer mc = session.createConsumer(replyQueue);
+        TextMessage reply = (TextMessage) mc.receive(TEST_TIMEOUT);
+        assertNotNull(reply);
+        assertEquals("ping", reply.getText());
+        mc.close();
+    }
+
+    @Test
+    public void testPutAndGetStream() throws Exception {
+        File folder = tempFolder.newFolder();
+        byte[] content = new byte[300 * 1024];
+        new Random(1).nextBytes(content);
+        File file = new File(folder, "large.bin");
+        FileUtils.writeByteArrayToFile(file, content);
+
+        String cmdLine = getStreamConnectCommand(folder) + "-" + CMD_PUT + " @" + file.getAbsolutePath() + " -"
+                + CMD_TYPE + " bytes --" + CMD_STREAM + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        output.grab();
+
+        String target = new File(folder, "received").getAbsolutePath();
+        cmdLine = getStreamConnectCommand(folder) + "-" + CMD_GET + " -" + CMD_OUTPUT + " " + target + " --"
+                + CMD_STREAM + " TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        assertTrue(output.grab().contains("Payload written to file"));
+        assertArrayEquals(content, FileUtils.readFileToByteArray(new File(target)));
+    }
+
+    @Test
+    public void testBatchWithConcurrentProducers() throws Exception {
+        File folder = tempFolder.newFolder();
+        StringBuilder batchContent = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            batchContent.append(i).append('\n');
+        }
+        File batchFile = new File(folder, "batch.txt");
+        FileUtils.writeStringToFile(batchFile, batchContent.toString(), StandardCharsets.UTF_8);
+        String script = "\"msg.body=msg.body.replace('PLACEHOLDER',entry);\"";
+
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " \"test-PLACEHOLDER\" -" + CMD_BATCH_FILE + " "
+                + batchFile.getAbsolutePath() +  " -" + CMD_TRANSFORM_SCRIPT + " " +  script
+                + " --" + CMD_PRODUCERS + " 3 TEST.QUEUE";
+        a.run(cmdLine.split(" "));
+        String out = output.grab();
+        assertTrue("Stats per producer expected", out.contains("Producer 3: 3 msgs sent"));
+        assertTrue("Total expected", out.contains("10 messages sent"));
+
+        MessageConsumer mc = session.createConsumer(testQueue);
+        Set<String> bodies = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            TextMessage msg = (TextMessage) mc.receive(TEST_TIMEOUT);
+            assertNotNull("A message is expected", msg);
+            bodies.add(msg.getText());
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue("Line " + i + " expected", bodies.contains("test-" + i));
+        }
+    }
+
+    @Test
+    public void testBatchWithConcurrentProducersFailsOnProducerError() throws Exception {
+        File folder = tempFolder.newFolder();
+        File batchFile = new File(folder, "batch.txt");
+        FileUtils.writeStringToFile(batchFile, "1\n2\nbad\n4\n", StandardCharsets.UTF_8);
+        File scriptFile = new File(folder, "script.js");
+        FileUtils.writeStringToFile(scriptFile, "if (entry == 'bad') { throw 'bad line'; } msg.body = entry;",
+                StandardCharsets.UTF_8);
+
+        String cmdLine = getConnectCommand() + "-" + CMD_PUT + " x -" + CMD_BATCH_FILE + " "
+                + batchFile.getAbsolutePath() + " -" + CMD_TRANSFORM_SCRIPT + " @" + scriptFile.getAbsolutePath()
+                + " --" + CMD_PRODUCERS + " 2 TEST.QUEUE";
+        try {
+            a.run(cmdLine.split(" "));
+            fail("A failed producer should fail the put");
+        } catch (Exception e) {
+            // Expected
+        }
+        assertFalse(output.grab().contains("4 messages sent"));
+    }
+
     
     /**
      * Needed to split command line arguments by space, but not quoted.
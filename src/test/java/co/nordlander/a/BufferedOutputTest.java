@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing that output is buffered and written on flush or after the flush interval.
+ */
+public class BufferedOutputTest {
+
+	private static final String LN = System.lineSeparator();
+
+	@Test
+	public void writesOnFlush() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (BufferedOutput output = new BufferedOutput(out)) {
+			output.output("Payload: ", 42, " ", null);
+			Assert.assertEquals(0, out.size());
+			output.flush();
+			Assert.assertEquals("Payload: 42 null" + LN, out.toString(Charset.defaultCharset().name()));
+		}
+	}
+
+	@Test
+	public void writesAfterFlushInterval() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (BufferedOutput output = new BufferedOutput(out)) {
+			output.output("first");
+			output.output("second");
+			long deadline = System.currentTimeMillis() + 5000;
+			while (out.size() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(BufferedOutput.FLUSH_INTERVAL_MILLIS / 2);
+			}
+			Assert.assertEquals("first" + LN + "second" + LN, out.toString(Charset.defaultCharset().name()));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Test;
+
+public class CommitBatcherTest {
+
+	@Test
+	public void testTextSize() throws Exception {
+		ActiveMQTextMessage msg = new ActiveMQTextMessage();
+		msg.setText("0123456789");
+		assertEquals(10, CommitBatcher.estimateSize(msg));
+	}
+
+	@Test
+	public void testTextSizeInUtf8() throws Exception {
+		ActiveMQTextMessage msg = new ActiveMQTextMessage();
+		String text = "a\u00e5\u20ac\ud83d\ude00";
+		msg.setText(text);
+		assertEquals(text.getBytes(StandardCharsets.UTF_8).length, CommitBatcher.estimateSize(msg));
+		assertEquals(1 + 2 + 3 + 4, CommitBatcher.estimateSize(msg));
+	}
+
+	@Test
+	public void testBytesSize() throws Exception {
+		ActiveMQBytesMessage msg = new ActiveMQBytesMessage();
+		msg.writeBytes(new byte[42]);
+		assertEquals("Write only body cannot be measured", -1, CommitBatcher.estimateSize(msg));
+		msg.reset();
+		assertEquals(42, CommitBatcher.estimateSize(msg));
+	}
+
+	@Test
+	public void testMapSize() throws Exception {
+		ActiveMQMapMessage msg = new ActiveMQMapMessage();
+		msg.setString("name", "value");
+		msg.setBytes("data", new byte[10]);
+		msg.setInt("n", 1);
+		assertEquals(4 + 5 + 4 + 10 + 1 + 4, CommitBatcher.estimateSize(msg));
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing percentiles of the latency histogram.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void exactBelowSubBucketCount() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(50, histogram.getValueAtPercentile(50.0));
+		Assert.assertEquals(99, histogram.getValueAtPercentile(99.0));
+		Assert.assertEquals(100, histogram.getValueAtPercentile(100.0));
+		Assert.assertEquals(1, histogram.getMin());
+	}
+
+	@Test
+	public void relativeErrorForLargeValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 1000000; i++) {
+			histogram.record(i);
+		}
+		long p99 = histogram.getValueAtPercentile(99.0);
+		Assert.assertTrue("p99 was " + p99, Math.abs(p99 - 990000) <= 990000 * 0.016);
+		Assert.assertEquals(1000000, histogram.getValueAtPercentile(100.0));
+	}
+
+	@Test
+	public void mergeAndReset() {
+		LatencyHistogram a = new LatencyHistogram();
+		LatencyHistogram b = new LatencyHistogram();
+		a.record(10);
+		b.record(5000);
+		a.merge(b);
+		Assert.assertEquals(2, a.getCount());
+		Assert.assertEquals(5000, a.getMax());
+		a.reset();
+		Assert.assertEquals(0, a.getCount());
+		Assert.assertEquals(0, a.getValueAtPercentile(99.0));
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Testing chunked loading of files, with chunks much smaller than the file.
+ */
+public class MappedFileLoaderTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void bytesInChunks() throws Exception {
+		byte[] content = new byte[10000];
+		new Random(1).nextBytes(content);
+		File file = tempFolder.newFile();
+		FileUtils.writeByteArrayToFile(file, content);
+
+		ActiveMQBytesMessage msg = new ActiveMQBytesMessage();
+		new MappedFileLoader(64).writeTo(file, msg);
+		msg.reset();
+		byte[] read = new byte[(int) msg.getBodyLength()];
+		msg.readBytes(read);
+		Assert.assertArrayEquals(content, read);
+	}
+
+	@Test
+	public void multiByteCharactersAcrossChunks() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("åäö€").append(i);
+		}
+		File file = tempFolder.newFile();
+		FileUtils.writeStringToFile(file, sb.toString(), StandardCharsets.UTF_8);
+
+		MappedFileLoader loader = new MappedFileLoader(7);
+		Assert.assertEquals(sb.toString(), loader.readText(file, StandardCharsets.UTF_8));
+		// The decoder is reused for the next file
+		Assert.assertEquals(sb.toString(), loader.readText(file, StandardCharsets.UTF_8));
+	}
+}
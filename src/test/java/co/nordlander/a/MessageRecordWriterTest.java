@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.jms.JMSException;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Testing that messages are written as one JSON object or CSV row each, with typed properties.
+ */
+public class MessageRecordWriterTest {
+
+	private final ATestOutput output = new ATestOutput();
+
+	@Test
+	public void writesNdjson() throws Exception {
+		MessageRecordWriter writer = MessageRecordWriter.create(MessageRecordWriter.FORMAT_NDJSON, output);
+		ActiveMQTextMessage textMsg = new ActiveMQTextMessage();
+		textMsg.setJMSMessageID("ID:1");
+		textMsg.setJMSDestination(new ActiveMQQueue("q"));
+		textMsg.setText("line 1\nline 2");
+		textMsg.setIntProperty("count", 3);
+		textMsg.setBooleanProperty("urgent", true);
+		textMsg.setStringProperty("color", "blue");
+		writer.write(textMsg);
+		ActiveMQBytesMessage bytesMsg = new ActiveMQBytesMessage();
+		bytesMsg.writeBytes("foo".getBytes(StandardCharsets.UTF_8));
+		bytesMsg.reset();
+		writer.write(bytesMsg);
+
+		String[] lines = output.grab().split(System.lineSeparator());
+		Assert.assertEquals(2, lines.length);
+		ObjectMapper mapper = new ObjectMapper();
+		JsonNode text = mapper.readTree(lines[0]);
+		Assert.assertEquals("ID:1", text.get("JMSMessageID").asText());
+		Assert.assertEquals("queue://q", text.get("JMSDestination").asText());
+		Assert.assertTrue(text.get("JMSCorrelationID").isNull());
+		Assert.assertEquals("TextMessage", text.get("type").asText());
+		Assert.assertEquals("line 1\nline 2", text.get("body").asText());
+		Assert.assertEquals(3, text.get("properties").get("count").intValue());
+		Assert.assertTrue(text.get("properties").get("urgent").booleanValue());
+		Assert.assertEquals("blue", text.get("properties").get("color").textValue());
+		JsonNode bytes = mapper.readTree(lines[1]);
+		Assert.assertEquals("BytesMessage", bytes.get("type").asText());
+		Assert.assertArrayEquals("foo".getBytes(StandardCharsets.UTF_8), bytes.get("body").binaryValue());
+	}
+
+	@Test
+	public void writesCsv() throws Exception {
+		MessageRecordWriter writer = MessageRecordWriter.create(MessageRecordWriter.FORMAT_CSV, output);
+		ActiveMQTextMessage textMsg = new ActiveMQTextMessage();
+		textMsg.setJMSMessageID("ID:1");
+		textMsg.setText("say \"hi\", bye");
+		textMsg.setIntProperty("count", 3);
+		writer.write(textMsg);
+		ActiveMQMapMessage mapMsg = new ActiveMQMapMessage();
+		mapMsg.setJMSMessageID("ID:2");
+		mapMsg.setString("fruit", "apple");
+		writer.write(mapMsg);
+
+		String[] lines = output.grab().split(System.lineSeparator());
+		Assert.assertEquals("JMSMessageID,JMSTimestamp,JMSCorrelationID,JMSDeliveryMode,JMSPriority,JMSExpiration,"
+				+ "JMSType,JMSDestination,JMSRedelivered,JMSReplyTo,properties,type,body", lines[0]);
+		Assert.assertTrue(lines[1], lines[1].startsWith("ID:1,0,,"));
+		Assert.assertTrue(lines[1], lines[1].endsWith(",\"{\"\"count\"\":3}\",TextMessage,\"say \"\"hi\"\", bye\""));
+		Assert.assertTrue(lines[2], lines[2].endsWith(",{},MapMessage,\"{\"\"fruit\"\":\"\"apple\"\"}\""));
+	}
+
+	@Test
+	public void discardsFailedRecord() throws Exception {
+		for (String format : new String[] {MessageRecordWriter.FORMAT_NDJSON, MessageRecordWriter.FORMAT_CSV}) {
+			MessageRecordWriter writer = MessageRecordWriter.create(format, output);
+			output.grab();
+			ActiveMQTextMessage failing = new ActiveMQTextMessage() {
+				@Override
+				public String getText() throws JMSException {
+					throw new JMSException("Body cannot be read");
+				}
+			};
+			failing.setJMSMessageID("ID:1");
+			failing.setIntProperty("count", 3);
+			try {
+				writer.write(failing);
+				Assert.fail("Exception expected");
+			} catch (JMSException e) {
+				// Expected, after the headers and properties are generated
+			}
+			ActiveMQTextMessage textMsg = new ActiveMQTextMessage();
+			textMsg.setJMSMessageID("ID:2");
+			textMsg.setText("ok");
+			writer.write(textMsg);
+
+			String[] lines = output.grab().split(System.lineSeparator());
+			Assert.assertEquals(format, 1, lines.length);
+			Assert.assertFalse(lines[0], lines[0].contains("ID:1"));
+			if (format.equals(MessageRecordWriter.FORMAT_NDJSON)) {
+				Assert.assertEquals("ok", new ObjectMapper().readTree(lines[0]).get("body").asText());
+			} else {
+				Assert.assertTrue(lines[0], lines[0].startsWith("ID:2,") && lines[0].endsWith(",{},TextMessage,ok"));
+			}
+		}
+	}
+}
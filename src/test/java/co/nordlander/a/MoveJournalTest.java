@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Testing that a journal resumes with the messages that were sent but not acknowledged.
+ */
+public class MoveJournalTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void sentButNotAcknowledgedIsInDoubt() throws Exception {
+		File file = new File(tempFolder.getRoot(), "move.journal");
+		try (MoveJournal journal = new MoveJournal(file)) {
+			journal.sent("ID:1", false);
+			journal.checkpoint();
+			journal.sent("ID:2", false);
+			// Stops before ID:2 is acknowledged
+		}
+		try (MoveJournal journal = new MoveJournal(file)) {
+			Assert.assertEquals(1, journal.getMoved());
+			Assert.assertEquals(1, journal.getResumedInDoubt());
+			Assert.assertFalse(journal.isInDoubt("ID:1"));
+			Assert.assertTrue(journal.isInDoubt("ID:2"));
+			journal.skipped("ID:2");
+			journal.sent("ID:3", false);
+			journal.checkpoint();
+			Assert.assertFalse(journal.isInDoubt("ID:2"));
+			Assert.assertEquals(3, journal.getMoved());
+		}
+		try (MoveJournal journal = new MoveJournal(file)) {
+			Assert.assertEquals(3, journal.getMoved());
+			Assert.assertEquals(0, journal.getResumedInDoubt());
+		}
+	}
+
+	@Test
+	public void uncommittedTransactionIsSentAgain() throws Exception {
+		File file = new File(tempFolder.getRoot(), "move.journal");
+		try (MoveJournal journal = new MoveJournal(file)) {
+			journal.sent("ID:1", true);
+			journal.sent("ID:2", true);
+			journal.checkpoint();
+			journal.sent("ID:3", true);
+		}
+		try (MoveJournal journal = new MoveJournal(file)) {
+			Assert.assertEquals(2, journal.getMoved());
+			Assert.assertFalse(journal.isInDoubt("ID:3"));
+		}
+	}
+}
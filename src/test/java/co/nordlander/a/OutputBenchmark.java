@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+
+import static co.nordlander.a.A.*;
+
+/**
+ * Measures browse with -j through the unbuffered output that A used to have, and through the buffered output.
+ * Half of the messages are text, half are 512 byte bytes messages printed as hex. The output goes to a temporary
+ * file through System.out, the rates to stderr. Not run as a test. Run it with i.e.
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) co.nordlander.a.OutputBenchmark [messages] [rounds]
+ * </pre>
+ */
+public class OutputBenchmark {
+
+	private static final String BROKER_URL = "vm://benchmark?create=false";
+	private static final String QUEUE = "BENCHMARK.QUEUE";
+
+	public static void main(String[] args) throws Exception {
+		final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		final BrokerService broker = startBroker(messages);
+		final PrintStream stdout = System.out;
+		final File file = File.createTempFile("a-benchmark", ".out");
+		file.deleteOnExit();
+		try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+			fill(messages);
+			System.setOut(out);
+			// The first rounds warm up the JIT
+			browse(false);
+			browse(true);
+			for (int round = 1; round <= rounds; round++) {
+				final double unbuffered = messages / (browse(false) / 1e9);
+				final double buffered = messages / (browse(true) / 1e9);
+				System.err.println(String.format("Round %d: unbuffered %.0f msgs/s, buffered %.0f msgs/s", round,
+						unbuffered, buffered));
+			}
+		} finally {
+			System.setOut(stdout);
+			broker.stop();
+		}
+	}
+
+	private static BrokerService startBroker(final int messages) throws Exception {
+		final BrokerService broker = new BrokerService();
+		broker.setBrokerName("benchmark");
+		broker.setPersistent(false);
+		broker.setUseJmx(false);
+		final PolicyEntry policy = new PolicyEntry();
+		policy.setQueue(">");
+		policy.setMaxBrowsePageSize(messages);
+		policy.setMaxPageSize(messages);
+		final PolicyMap policies = new PolicyMap();
+		policies.setDefaultEntry(policy);
+		broker.setDestinationPolicy(policies);
+		broker.start();
+		broker.waitUntilStarted();
+		return broker;
+	}
+
+	private static void fill(final int messages) throws Exception {
+		final Connection conn = new ActiveMQConnectionFactory(BROKER_URL).createConnection();
+		try {
+			final Session session = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			final MessageProducer mp = session.createProducer(session.createQueue(QUEUE));
+			final byte[] payload = new byte[512];
+			new Random(42).nextBytes(payload);
+			for (int i = 0; i < messages; i++) {
+				if (i % 2 == 0) {
+					mp.send(session.createTextMessage("Message " + i));
+				} else {
+					final BytesMessage msg = session.createBytesMessage();
+					msg.writeBytes(payload);
+					mp.send(msg);
+				}
+			}
+		} finally {
+			conn.close();
+		}
+	}
+
+	// Nanoseconds to browse all messages
+	private static long browse(final boolean buffered) throws Exception {
+		final A a = new A();
+		if (!buffered) {
+			// The output of A before it was buffered
+			a.output = args -> {
+				for (Object arg : args) {
+					System.out.print(arg.toString());
+				}
+				System.out.println("");
+			};
+		}
+		final long start = System.nanoTime();
+		a.run(("-" + CMD_BROKER + " " + BROKER_URL + " -" + CMD_JMS_HEADERS + " -" + CMD_COUNT + " 0 " + QUEUE)
+				.split(" "));
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing formatting of payloads and headers for output.
+ */
+public class OutputFormatTest {
+
+	@Test
+	public void bytesAsHex() {
+		A a = new A();
+		Assert.assertEquals("00 7F 80 FF 0A ", a.bytesToHex(new byte[] {0, 127, -128, -1, 10}));
+		Assert.assertEquals("", a.bytesToHex(new byte[0]));
+	}
+
+	@Test
+	public void timestampAsDefaultDateFormat() {
+		A a = new A();
+		long timestamp = 1234567890123L;
+		Assert.assertEquals(new SimpleDateFormat(A.DEFAULT_DATE_FORMAT).format(new Date(timestamp)),
+				a.timestampToString(timestamp));
+		Assert.assertEquals(new SimpleDateFormat(A.DEFAULT_DATE_FORMAT).format(new Date(0)), a.timestampToString(0));
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing payload generator specs.
+ */
+public class PayloadGeneratorTest {
+
+	@Test
+	public void fixedSizeText() throws Exception {
+		PayloadGenerator generator = new PayloadGenerator("gen:random:100", true, StandardCharsets.UTF_8);
+		String text = generator.nextText();
+		Assert.assertEquals(100, text.length());
+		Assert.assertTrue(text.matches("[A-Za-z0-9]+"));
+	}
+
+	@Test
+	public void uniformSizesWithinBounds() throws Exception {
+		PayloadGenerator generator = new PayloadGenerator("random:uniform(10,20)", false, StandardCharsets.UTF_8);
+		for (int i = 0; i < 1000; i++) {
+			int size = generator.nextSize();
+			Assert.assertTrue("Size was " + size, size >= 10 && size <= 20);
+		}
+		Assert.assertEquals(20, generator.getMaxSize());
+	}
+
+	@Test
+	public void normalSizesAreCapped() throws Exception {
+		PayloadGenerator generator = new PayloadGenerator("random:normal(100,10)", false, StandardCharsets.UTF_8);
+		for (int i = 0; i < 1000; i++) {
+			int size = generator.nextSize();
+			Assert.assertTrue("Size was " + size, size >= 0 && size <= 160);
+		}
+	}
+
+	@Test
+	public void templateWithSequence() throws Exception {
+		PayloadGenerator generator = new PayloadGenerator("gen:template:id=${seq};ts=${timestamp}", true,
+				StandardCharsets.UTF_8);
+		Assert.assertTrue(generator.nextText().matches("id=1;ts=\\d+"));
+		Assert.assertTrue(generator.nextText().startsWith("id=2;"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownGenerator() throws Exception {
+		new PayloadGenerator("gen:foo", true, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing that values and regexes are found in the body of all message types and in properties.
+ */
+public class PayloadSearchTest {
+
+	private final PayloadSearch search = new PayloadSearch(Arrays.asList("apple", "åsna"),
+			Collections.singletonList("order-\\d+"), StandardCharsets.UTF_8);
+
+	@Test
+	public void findsInTextAndProperties() throws Exception {
+		ActiveMQTextMessage msg = new ActiveMQTextMessage();
+		msg.setText("an apple for order-42");
+		msg.setStringProperty("animal", "en åsna");
+		Assert.assertEquals(Arrays.asList("apple in body", "/order-\\d+/ in body", "åsna in property animal"),
+				search.find(msg));
+
+		msg = new ActiveMQTextMessage();
+		msg.setText("a pear for order-x");
+		Assert.assertFalse(search.matches(msg));
+	}
+
+	@Test
+	public void findsInBytesAndMapValues() throws Exception {
+		ActiveMQBytesMessage bytesMsg = new ActiveMQBytesMessage();
+		bytesMsg.writeBytes("en åsna".getBytes(StandardCharsets.UTF_8));
+		bytesMsg.reset();
+		Assert.assertEquals(Collections.singletonList("åsna in body"), search.find(bytesMsg));
+		// The message can still be read from the start
+		Assert.assertEquals("en åsna".getBytes(StandardCharsets.UTF_8).length, bytesMsg.readBytes(new byte[64]));
+
+		ActiveMQMapMessage mapMsg = new ActiveMQMapMessage();
+		mapMsg.setString("fruit", "apple");
+		mapMsg.setBytes("ref", "order-7".getBytes(StandardCharsets.UTF_8));
+		mapMsg.setInt("count", 3);
+		Assert.assertEquals(2, search.find(mapMsg).size());
+		Assert.assertTrue(search.find(mapMsg).contains("apple in map entry fruit"));
+		Assert.assertTrue(search.find(mapMsg).contains("/order-\\d+/ in map entry ref"));
+	}
+}
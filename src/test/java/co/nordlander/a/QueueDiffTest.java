@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing that the diff finds messages only on one side and with different content, also from runs on disk.
+ */
+public class QueueDiffTest {
+
+	private final List<String> differences = new ArrayList<>();
+
+	@Test
+	public void diffsById() throws Exception {
+		try (QueueDiff diff = new QueueDiff(false, 3)) {
+			for (int i = 0; i < 10; i++) {
+				diff.addA(dump("ID:" + i, "body " + i));
+			}
+			for (int i = 9; i >= 1; i--) {
+				diff.addB(dump("ID:" + i, i == 5 ? "changed" : "body " + i));
+			}
+			diff.addB(dump("ID:10", "body 10"));
+			diff.diff((difference, messageId) -> differences.add(difference + " " + messageId));
+			Assert.assertTrue(diff.getSpilledRuns() > 2);
+			Assert.assertEquals(10, diff.getCountA());
+			Assert.assertEquals(10, diff.getCountB());
+			Assert.assertEquals(8, diff.getEqual());
+		}
+		Assert.assertEquals(3, differences.size());
+		Assert.assertTrue(differences.toString(), differences.contains("ONLY_IN_A ID:0"));
+		Assert.assertTrue(differences.toString(), differences.contains("ONLY_IN_B ID:10"));
+		Assert.assertTrue(differences.toString(), differences.contains("CONTENT ID:5"));
+	}
+
+	@Test
+	public void diffsByContent() throws Exception {
+		try (QueueDiff diff = new QueueDiff(true, 100)) {
+			diff.addA(dump("ID:a1", "same"));
+			diff.addA(dump("ID:a2", "same"));
+			diff.addA(dump("ID:a3", "only a"));
+			diff.addB(dump("ID:b1", "same"));
+			diff.addB(dump("ID:b2", "only b"));
+			diff.diff((difference, messageId) -> differences.add(difference + " " + messageId));
+			Assert.assertEquals(1, diff.getEqual());
+			Assert.assertEquals(0, diff.getSpilledRuns());
+		}
+		Assert.assertEquals(3, differences.size());
+		Assert.assertTrue(differences.toString(), differences.contains("ONLY_IN_A ID:a3"));
+		Assert.assertTrue(differences.toString(), differences.contains("ONLY_IN_B ID:b2"));
+		Assert.assertTrue(differences.toString(), differences.contains("ONLY_IN_A ID:a1")
+				|| differences.contains("ONLY_IN_A ID:a2"));
+	}
+
+	@Test
+	public void ignoresBrokerProperties() throws Exception {
+		try (QueueDiff diff = new QueueDiff(false, 100)) {
+			MessageDump a = dump("ID:1", "body");
+			a.intProperties.put("JMSXDeliveryCount", 1);
+			a.stringProperties.put("color", "blue");
+			MessageDump b = dump("ID:1", "body");
+			b.intProperties.put("JMSXDeliveryCount", 3);
+			b.stringProperties.put("_AMQ_ROUTING_TYPE", "anycast");
+			b.stringProperties.put("color", "blue");
+			diff.addA(a);
+			diff.addB(b);
+			diff.diff((difference, messageId) -> differences.add(difference + " " + messageId));
+			Assert.assertEquals(1, diff.getEqual());
+		}
+		Assert.assertTrue(differences.isEmpty());
+	}
+
+	@Test
+	public void findsPropertyDifference() throws Exception {
+		try (QueueDiff diff = new QueueDiff(false, 100)) {
+			MessageDump a = dump("ID:1", "body");
+			a.stringProperties.put("color", "blue");
+			MessageDump b = dump("ID:1", "body");
+			b.stringProperties.put("color", "red");
+			diff.addA(a);
+			diff.addB(b);
+			diff.diff((difference, messageId) -> differences.add(difference + " " + messageId));
+		}
+		Assert.assertEquals("[CONTENT ID:1]", differences.toString());
+	}
+
+	private static MessageDump dump(final String messageId, final String body) {
+		MessageDump dump = new MessageDump();
+		dump.JMSMessageID = messageId;
+		dump.type = "TextMessage";
+		dump.body = body;
+		return dump;
+	}
+}
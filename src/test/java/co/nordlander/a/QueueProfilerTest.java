@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.List;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing that the profile counts types, sizes and property values without the payloads.
+ */
+public class QueueProfilerTest {
+
+	@Test
+	public void profilesMessages() throws Exception {
+		QueueProfiler profiler = new QueueProfiler(2);
+		for (int i = 0; i < 10; i++) {
+			ActiveMQTextMessage msg = new ActiveMQTextMessage();
+			msg.setText("secret payload");
+			msg.setJMSType(i < 7 ? "order" : "invoice");
+			msg.setStringProperty("color", i < 5 ? "blue" : i < 8 ? "red" : "green");
+			msg.setJMSTimestamp(System.currentTimeMillis() - 1000);
+			profiler.add(msg);
+		}
+		ActiveMQBytesMessage bytesMsg = new ActiveMQBytesMessage();
+		bytesMsg.writeBytes(new byte[100]);
+		bytesMsg.reset();
+		bytesMsg.setJMSRedelivered(true);
+		profiler.add(bytesMsg);
+
+		List<String> report = profiler.report();
+		String all = String.join("\n", report);
+		Assert.assertEquals("Profile of 11 msgs", report.get(0));
+		Assert.assertTrue(all, report.contains("Types: BytesMessage 1, TextMessage 10"));
+		Assert.assertTrue(all, report.contains("Text size in chars: n=10 p50=14 p99=14 p99.9=14 max=14"));
+		Assert.assertTrue(all, report.contains("Bytes size: n=1 p50=100B p99=100B p99.9=100B max=100B"));
+		Assert.assertTrue(all, all.contains("Age: n=10 p50=1"));
+		Assert.assertTrue(all, report.contains("1 msgs without JMSTimestamp"));
+		Assert.assertTrue(all, report.contains("Redelivered: 1"));
+		Assert.assertTrue(all, report.contains("JMSType: order 7, invoice 3 of 11 msgs"));
+		Assert.assertTrue(all, report.contains("Property color: blue 5, red 3 of 10 msgs"));
+		Assert.assertFalse(all, all.contains("secret"));
+	}
+
+	@Test
+	public void boundsCountersOfUniqueValues() throws Exception {
+		QueueProfiler.TopValues values = new QueueProfiler.TopValues(4);
+		for (int i = 0; i < 1000; i++) {
+			values.add(i % 2 == 0 ? "frequent" : "id-" + i);
+		}
+		String top = values.format(1);
+		Assert.assertTrue(top, top.startsWith("frequent "));
+		Assert.assertTrue(top, top.contains(" of 1000 msgs (too many values, counts may be up to "));
+	}
+
+	@Test
+	public void countsNumericAndBooleanValues() throws Exception {
+		QueueProfiler profiler = new QueueProfiler(2);
+		for (int i = 0; i < 5; i++) {
+			ActiveMQTextMessage msg = new ActiveMQTextMessage();
+			msg.setIntProperty("priority", i < 3 ? 1 : 2);
+			msg.setBooleanProperty("urgent", i == 0);
+			profiler.add(msg);
+		}
+		List<String> report = profiler.report();
+		String all = String.join("\n", report);
+		Assert.assertTrue(all, report.contains("Property priority: 1 3, 2 2 of 5 msgs"));
+		Assert.assertTrue(all, report.contains("Property urgent: false 4, true 1 of 5 msgs"));
+	}
+
+	@Test
+	public void truncatesLongValues() {
+		QueueProfiler.TopValues values = new QueueProfiler.TopValues(4);
+		values.add(new String(new char[100]).replace('\0', 'x'));
+		Assert.assertEquals(new String(new char[40]).replace('\0', 'x') + "... 1 of 1 msgs", values.format(1));
+	}
+
+	@Test
+	public void reportsEmptyQueue() {
+		Assert.assertEquals("Profile of 0 msgs", String.join("\n", new QueueProfiler(10).report()));
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.nordlander.a;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing that the reservoir keeps a uniform sample of a fixed size, in stream order.
+ */
+public class ReservoirTest {
+
+	@Test
+	public void keepsAllOfShortStream() {
+		Reservoir<Integer> reservoir = new Reservoir<>(10);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(reservoir.add(i));
+		}
+		Assert.assertEquals(Arrays.asList(0, 1, 2), reservoir.getSample());
+		Assert.assertArrayEquals(new long[] {0, 1, 2}, reservoir.getPositions());
+		Assert.assertEquals(3, reservoir.getSeen());
+	}
+
+	@Test
+	public void keepsSampleInStreamOrder() {
+		Reservoir<Integer> reservoir = new Reservoir<>(100, new Random(1));
+		for (int i = 0; i < 100000; i++) {
+			reservoir.add(i);
+		}
+		List<Integer> sample = reservoir.getSample();
+		long[] positions = reservoir.getPositions();
+		Assert.assertEquals(100, sample.size());
+		for (int i = 0; i < sample.size(); i++) {
+			Assert.assertEquals(positions[i], (long) sample.get(i));
+			if (i > 0) {
+				Assert.assertTrue(sample.get(i) > sample.get(i - 1));
+			}
+		}
+		Assert.assertEquals(100000, reservoir.getSeen());
+	}
+
+	@Test
+	public void samplesUniformly() {
+		final int streamLength = 100;
+		final int runs = 20000;
+		final int[] picked = new int[streamLength];
+		Random random = new Random(42);
+		for (int run = 0; run < runs; run++) {
+			Reservoir<Integer> reservoir = new Reservoir<>(10, random);
+			for (int i = 0; i < streamLength; i++) {
+				reservoir.add(i);
+			}
+			for (int i : reservoir.getSample()) {
+				picked[i]++;
+			}
+		}
+		// Each element is expected 2000 times, with a standard deviation of about 42
+		for (int i = 0; i < streamLength; i++) {
+			Assert.assertTrue(i + " picked " + picked[i] + " times", Math.abs(picked[i] - 2000) < 250);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptySample() {
+		new Reservoir<Integer>(0);
+	}
+}